@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full build of a 640x480 area on the default pool, with the scalar and with
+ * the vector kernel. A new object is created before every call, otherwise the
+ * build would reuse the iteration data of the previous one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class BuildBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Param({ "full", "seahorse", "spiral" })
+    public String viewport;
+
+    @Param({ "256", "4096" })
+    public int nMax;
+
+    @Param({ "false", "true" })
+    public boolean vectorKernel;
+
+    private Object mandelbrot;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        double centerRe;
+        double centerIm;
+        double rangeRe;
+        switch (this.viewport) {
+        case "full":
+            centerRe = -0.75D;
+            centerIm = 0.0D;
+            rangeRe = 3.5D;
+            break;
+        case "seahorse":
+            centerRe = -0.75D;
+            centerIm = 0.1D;
+            rangeRe = 0.05D;
+            break;
+        case "spiral":
+            centerRe = -0.743643887037151D;
+            centerIm = 0.131825904205330D;
+            rangeRe = 1E-6D;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown viewport '" + this.viewport + "'");
+        }
+        double rangeIm = rangeRe * HEIGHT / WIDTH;
+        this.mandelbrot = MandelbrotHandles.create(WIDTH, HEIGHT, centerRe - rangeRe / 2.0D,
+                centerIm - rangeIm / 2.0D, centerRe + rangeRe / 2.0D, centerIm + rangeIm / 2.0D, this.nMax);
+        MandelbrotHandles.setOption(this.mandelbrot, "useVectorKernel", this.vectorKernel);
+    }
+
+    @Benchmark
+    public int[] build() {
+        return MandelbrotHandles.build(this.mandelbrot);
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The steps after a build: the background pattern, the colored pixels of the
+ * full image and writing the image to a file. A Mandelbrot object keeps its
+ * image once it has been created, so every call gets a fresh copy of a built
+ * object (the copy takes over the iteration data and is built in the setup).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class ImageBenchmark {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    private Object built;
+    private Object mandelbrot;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        // the area is a bit narrower than the image, so some columns show the background
+        this.built = MandelbrotHandles.create(WIDTH, HEIGHT, -2.5D, -1.0D, 1.0D, 1.0D, 1000);
+        MandelbrotHandles.build(this.built);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        this.mandelbrot = MandelbrotHandles.copy(this.built);
+        MandelbrotHandles.build(this.mandelbrot);
+    }
+
+    @Benchmark
+    public int[] getBackgroundPattern() {
+        return MandelbrotHandles.getBackgroundPattern(this.mandelbrot);
+    }
+
+    @Benchmark
+    public int[] getFullRGBArray() {
+        return MandelbrotHandles.getFullRGBArray(this.mandelbrot);
+    }
+
+    @Benchmark
+    public void exportImage(Output output) {
+        MandelbrotHandles.exportImage(this.mandelbrot, output.file.getPath());
+    }
+
+    /**
+     * The file the image is written to, only exportImage() depends on the format.
+     */
+    @State(Scope.Thread)
+    public static class Output {
+        @Param({ "png", "jpg", "ppm" })
+        public String format;
+
+        File file;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            this.file = File.createTempFile("mandelbrot-benchmark", "." + this.format);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.file.delete();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The scalar iteration of a single point. The points cover the cheap cases
+ * (inside of the main cardioid, quickly escaping) as well as the expensive
+ * ones (inside of a bulb that only the periodicity check catches, close to the
+ * boundary where the sequence runs for many iterations).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class IterateBenchmark {
+    @Param({ "cardioid", "bulb", "exterior", "boundary" })
+    public String point;
+
+    @Param({ "1000", "100000" })
+    public int nMax;
+
+    @Param({ "true", "false" })
+    public boolean checks;
+
+    private Object mandelbrot;
+    private double cRe;
+    private double cIm;
+
+    @Setup
+    public void setup() {
+        this.mandelbrot = MandelbrotHandles.create(1, 1, -2.0D, -1.0D, 1.0D, 1.0D, this.nMax);
+        MandelbrotHandles.setOption(this.mandelbrot, "useInteriorCheck", this.checks);
+        MandelbrotHandles.setOption(this.mandelbrot, "usePeriodicityCheck", this.checks);
+        switch (this.point) {
+        case "cardioid":
+            this.cRe = -0.2D;
+            this.cIm = 0.1D;
+            break;
+        case "bulb": // center of the period-3 bulb at the top
+            this.cRe = -0.1225611668766536D;
+            this.cIm = 0.7448617666197442D;
+            break;
+        case "exterior":
+            this.cRe = 0.5D;
+            this.cIm = 0.5D;
+            break;
+        case "boundary":
+            this.cRe = -0.743643887037151D;
+            this.cIm = 0.131825904205330D;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown point '" + this.point + "'");
+        }
+    }
+
+    @Benchmark
+    public int iterate() {
+        return MandelbrotHandles.iterate(this.mandelbrot, this.cRe, this.cIm);
+    }
+}
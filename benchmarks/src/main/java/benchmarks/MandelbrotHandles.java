@@ -0,0 +1,158 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Access to the application classes, which live in the unnamed package and can
+ * therefore not be imported. The handles are resolved once, so the benchmarks
+ * measure the calls themselves and not the lookup. Private methods are reached
+ * through a private lookup, which is allowed because the application and the
+ * benchmarks share the unnamed module of the class path.
+ */
+final class MandelbrotHandles {
+    static final Class<?> MANDELBROT;
+
+    private static final MethodHandle CONSTRUCTOR;
+    private static final MethodHandle COPY;
+    private static final MethodHandle ITERATE;
+    private static final MethodHandle CREATE_COLOR_PALETTE;
+    private static final MethodHandle GET_COLOR;
+    private static final MethodHandle RENDER;
+    private static final MethodHandle GET_BACKGROUND_PATTERN;
+    private static final MethodHandle GET_FULL_RGB_ARRAY;
+    private static final MethodHandle EXPORT_IMAGE;
+
+    static {
+        try {
+            MANDELBROT = Class.forName("Mandelbrot");
+            Class<?> orbitState = Class.forName("Mandelbrot$OrbitState");
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(MANDELBROT, MethodHandles.lookup());
+            CONSTRUCTOR = lookup.findConstructor(MANDELBROT, MethodType.methodType(void.class, int.class, int.class,
+                    double.class, double.class, double.class, double.class, int.class, int.class, int[].class));
+            COPY = lookup.findConstructor(MANDELBROT, MethodType.methodType(void.class, MANDELBROT));
+            ITERATE = lookup.findVirtual(MANDELBROT, "iterate", MethodType.methodType(int.class, double.class,
+                    double.class, orbitState, float[].class, int.class));
+            Class<?> colorPalette = Class.forName("ColorPalette");
+            MethodHandles.Lookup paletteLookup = MethodHandles.privateLookupIn(colorPalette, MethodHandles.lookup());
+            CREATE_COLOR_PALETTE = paletteLookup.findConstructor(colorPalette,
+                    MethodType.methodType(void.class, int.class, int[].class, int.class));
+            GET_COLOR = paletteLookup.findVirtual(colorPalette, "getColor",
+                    MethodType.methodType(int.class, int.class));
+            RENDER = lookup.findVirtual(MANDELBROT, "render", MethodType.methodType(CompletableFuture.class));
+            GET_BACKGROUND_PATTERN = lookup.findVirtual(MANDELBROT, "getBackgroundPattern",
+                    MethodType.methodType(int[].class));
+            GET_FULL_RGB_ARRAY = lookup.findVirtual(MANDELBROT, "getFullRGBArray", MethodType.methodType(int[].class));
+            EXPORT_IMAGE = lookup.findVirtual(MANDELBROT, "exportImage",
+                    MethodType.methodType(void.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Gradient of the example configuration in the README. */
+    static final int[] GRADIENT = { 0xFFFFFF, 0x0048FF, 0xFFFF00 };
+
+    private MandelbrotHandles() {
+    }
+
+    static Object create(int width, int height, double minRe, double minIm, double maxRe, double maxIm, int nMax) {
+        try {
+            return CONSTRUCTOR.invoke(width, height, minRe, minIm, maxRe, maxIm, nMax, 0x000000, GRADIENT);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object copy(Object mandelbrot) {
+        try {
+            return COPY.invoke(mandelbrot);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * @return the iteration count of a single point, computed without recording
+     *         an orbit state
+     */
+    static int iterate(Object mandelbrot, double cRe, double cIm) {
+        try {
+            return (int) ITERATE.invoke(mandelbrot, cRe, cIm, null, null, 0);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * This method sets one of the public options of a Mandelbrot object.
+     */
+    static void setOption(Object mandelbrot, String name, Object value) {
+        try {
+            MANDELBROT.getField(name).set(mandelbrot, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown option '" + name + "'", e);
+        }
+    }
+
+    static Object createColorPalette(int color, int[] gradient, int nMax) {
+        try {
+            return CREATE_COLOR_PALETTE.invoke(color, gradient, nMax);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int getColor(Object palette, int n) {
+        try {
+            return (int) GET_COLOR.invoke(palette, n);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * @return the iteration data after the object has been built
+     */
+    static int[] build(Object mandelbrot) {
+        try {
+            return ((CompletableFuture<int[]>) RENDER.invoke(mandelbrot)).join();
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[] getBackgroundPattern(Object mandelbrot) {
+        try {
+            return (int[]) GET_BACKGROUND_PATTERN.invoke(mandelbrot);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[] getFullRGBArray(Object mandelbrot) {
+        try {
+            return (int[]) GET_FULL_RGB_ARRAY.invoke(mandelbrot);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void exportImage(Object mandelbrot, String path) {
+        try {
+            EXPORT_IMAGE.invoke(mandelbrot, path);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new IllegalStateException(e);
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The creation of the color palette and the coloring of a million pixels whose
+ * numbers of iterations are spread over the whole range. Small palettes keep a
+ * table of all colors, large ones interpolate the gradient for every pixel.
+ * The cache of getColorPalette() is bypassed, every call creates a new palette.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class PaletteBenchmark {
+    private static final int PIXELS = 1 << 20;
+
+    @Param({ "1000", "100000", "1000000", "50000000" })
+    public int nMax;
+
+    private Object palette;
+    private int[] iterations;
+
+    @Setup
+    public void setup() {
+        this.palette = MandelbrotHandles.createColorPalette(0x000000, MandelbrotHandles.GRADIENT, this.nMax);
+        this.iterations = new int[PIXELS];
+        for (int i = 0; i < PIXELS; i++)
+            this.iterations[i] = (int) ((long) i * this.nMax / PIXELS);
+    }
+
+    @Benchmark
+    public Object createColorPalette() {
+        return MandelbrotHandles.createColorPalette(0x000000, MandelbrotHandles.GRADIENT, this.nMax);
+    }
+
+    @Benchmark
+    public int[] colorPixels() {
+        int[] rgb = new int[PIXELS];
+        for (int i = 0; i < PIXELS; i++)
+            rgb[i] = MandelbrotHandles.getColor(this.palette, this.iterations[i]);
+        return rgb;
+    }
+}
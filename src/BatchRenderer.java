@@ -0,0 +1,158 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Renders a sequence of frames in one process. The frames are either listed in
+ * the configuration file, where every frame overrides some values of the base
+ * configuration, or given by a zoom path from a start width to an end width
+ * around a fixed center. While a frame is computed, the previous frames are
+ * colored and written to their files on separate threads.
+ */
+class BatchRenderer {
+    private final Map<String, Object> config;
+    private final int fullWidth;
+    private final int fullHeight;
+    private final String outputPath;
+    private final List<?> frames;
+    private final Map<?, ?> zoomPath;
+    private final Mandelbrot base;
+
+    /**
+     * @param config     base configuration with a list 'frames' or a map
+     *                   'zoomPath'
+     * @param fullWidth  X-dimension of every frame in pixels
+     * @param fullHeight Y-dimension of every frame in pixels
+     * @param outputPath path of the frames, either a format string for the frame
+     *                   number (e.g. 'frame%04d.jpg') or a path the frame number
+     *                   is appended to
+     */
+    BatchRenderer(Map<String, Object> config, int fullWidth, int fullHeight, String outputPath)
+            throws Mandelbrot.MandelbrotConfigException {
+        this.config = new HashMap<>(config);
+        Object frames = this.config.remove("frames");
+        Object zoomPath = this.config.remove("zoomPath");
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+        this.outputPath = outputPath;
+        if ((frames == null) == (zoomPath == null))
+            throw new Mandelbrot.MandelbrotConfigException(
+                    "The configuration must contain either a list 'frames' or a 'zoomPath'");
+        if (frames != null && !(frames instanceof List))
+            throw new Mandelbrot.MandelbrotConfigException("'frames' must be a list");
+        if (zoomPath != null && !(zoomPath instanceof Map))
+            throw new Mandelbrot.MandelbrotConfigException("'zoomPath' must be a map");
+        this.frames = (List<?>) frames;
+        this.zoomPath = (Map<?, ?>) zoomPath;
+        if (this.frames != null)
+            for (Object frame : this.frames)
+                if (!(frame instanceof Map))
+                    throw new Mandelbrot.MandelbrotConfigException("Every entry of 'frames' must be a map");
+        if (this.zoomPath != null) {
+            Object count = this.zoomPath.get("frames");
+            if (!(count instanceof Integer) || (Integer) count <= 0)
+                throw new Mandelbrot.MandelbrotConfigException(
+                        "'frames' of the 'zoomPath' must be a positive integer");
+            for (String key : new String[] { "startWidth", "endWidth" }) {
+                Object width = this.zoomPath.get(key);
+                if (!(width instanceof Number) || !(((Number) width).doubleValue() > 0.0D)
+                        || Double.isInfinite(((Number) width).doubleValue()))
+                    throw new Mandelbrot.MandelbrotConfigException(
+                            "'" + key + "' of the 'zoomPath' must be a positive number");
+            }
+            for (String key : new String[] { "centerRe", "centerIm" }) {
+                Object center = this.zoomPath.get(key);
+                if (!(center instanceof Number) && !(center instanceof String))
+                    throw new Mandelbrot.MandelbrotConfigException(
+                            "The 'zoomPath' must contain a coordinate '" + key + "'");
+                Mandelbrot.toExact(center);
+            }
+        }
+        this.base = new Mandelbrot(this.config, fullWidth, fullHeight);
+    }
+
+    int getFrameCount() {
+        if (this.frames != null)
+            return this.frames.size();
+        return (Integer) this.zoomPath.get("frames");
+    }
+
+    /**
+     * @return the unbuilt Mandelbrot object of a frame
+     */
+    Mandelbrot createFrame(int index) throws Mandelbrot.MandelbrotConfigException {
+        if (this.frames != null) {
+            Map<String, Object> frameConfig = new HashMap<>(this.config);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) this.frames.get(index)).entrySet())
+                frameConfig.put(String.valueOf(entry.getKey()), entry.getValue());
+            return new Mandelbrot(frameConfig, this.fullWidth, this.fullHeight);
+        }
+        BigDecimal centerRe = Mandelbrot.toExact(this.zoomPath.get("centerRe"));
+        BigDecimal centerIm = Mandelbrot.toExact(this.zoomPath.get("centerIm"));
+        double startWidth = ((Number) this.zoomPath.get("startWidth")).doubleValue();
+        double endWidth = ((Number) this.zoomPath.get("endWidth")).doubleValue();
+        int count = this.getFrameCount();
+        double t = count > 1 ? (double) index / (double) (count - 1) : 0.0D;
+        double width = startWidth * Math.pow(endWidth / startWidth, t);
+        return this.base.zoom(centerRe, centerIm, this.base.getRangeRe() / width);
+    }
+
+    /**
+     * @return the path the frame is written to
+     */
+    String getFramePath(int index) {
+        if (this.outputPath.contains("%"))
+            return String.format(this.outputPath, index);
+        int dot = this.outputPath.lastIndexOf('.');
+        if (dot <= this.outputPath.lastIndexOf('/'))
+            return this.outputPath + String.format("-%04d", index);
+        return this.outputPath.substring(0, dot) + String.format("-%04d", index) + this.outputPath.substring(dot);
+    }
+
+    /**
+     * This method computes all frames one after the other on the executor. Every
+     * finished frame is colored and written on one of the encoding threads while
+     * the next frame is computed. At most one frame per encoding thread waits to
+     * be written, so the frames do not pile up in memory.
+     *
+     * @param executor executor that computes the frames
+     * @param onFrame  called with the index of every frame that has been computed
+     */
+    void run(Executor executor, Mandelbrot.Executable<Integer> onFrame) throws InterruptedException {
+        int encoders = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ExecutorService encoder = Executors.newFixedThreadPool(encoders);
+        Semaphore slots = new Semaphore(encoders);
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        try {
+            for (int i = 0; i < this.getFrameCount(); i++) {
+                Mandelbrot frame = this.createFrame(i);
+                frame.render(executor).join();
+                onFrame.run(i);
+                String path = this.getFramePath(i);
+                slots.acquire();
+                written.add(CompletableFuture.runAsync(() -> {
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path))) {
+                        frame.exportImage(out, Mandelbrot.getImageFormat(path));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, encoder).whenComplete((v, err) -> slots.release()));
+            }
+            CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            encoder.shutdown();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Maps numbers of iterations to colors. The color gradient is spread evenly
+ * over the range from 0 to nMax iterations and interpolated linearly between
+ * its colors, so a color is computed from the few colors of the gradient
+ * instead of being read from an array with an entry for every number of
+ * iterations. Only for a small nMax the colors are computed once and kept in a
+ * table.
+ *
+ * Smooth colors are computed for a fractional number of iterations, which
+ * removes the bands between pixels whose numbers of iterations differ by one.
+ */
+class ColorPalette {
+    private static final int TABLE_LIMIT = 1 << 16; // Largest nMax for which all colors are kept in a table
+
+    private final int innerColor;
+    private final int[] stops; // Colors of the gradient, the first one for 0 iterations
+    private final int nMax;
+    private final double scale;
+    private final int[] table;
+
+    /**
+     * @param innerColor color for points inside the set
+     * @param gradient   color gradient for points outside the set (the first
+     *                   color for nMax-1 iterations, the last color for 0
+     *                   iterations)
+     * @param nMax       maximum number of iterations
+     */
+    ColorPalette(int innerColor, int[] gradient, int nMax) throws IllegalArgumentException {
+        if (gradient.length == 0)
+            throw new IllegalArgumentException("There must be at least one color in the color gradient");
+        this.innerColor = innerColor;
+        this.nMax = nMax;
+        this.stops = new int[gradient.length];
+        for (int i = 0; i < gradient.length; i++)
+            this.stops[i] = gradient[gradient.length - 1 - i];
+        this.scale = nMax > 0 ? (double) this.stops.length / (double) nMax : 0.0D;
+
+        if (nMax <= TABLE_LIMIT) {
+            this.table = new int[nMax + 1];
+            for (int n = 0; n < nMax; n++)
+                this.table[n] = this.interpolate(n);
+            this.table[nMax] = innerColor;
+        } else {
+            this.table = null;
+        }
+    }
+
+    int getNMax() {
+        return this.nMax;
+    }
+
+    /**
+     * @return the color of a pixel with n iterations
+     */
+    int getColor(int n) {
+        if (this.table != null)
+            return this.table[n];
+        if (n >= this.nMax)
+            return this.innerColor;
+        return this.interpolate(n);
+    }
+
+    /**
+     * @param fraction fractional part of the number of iterations from -1 to 1
+     * @return the color of a pixel with n + fraction iterations
+     */
+    int getColor(int n, float fraction) {
+        if (n >= this.nMax)
+            return this.innerColor;
+        return this.interpolate(Math.max(0.0D, n + (double) fraction));
+    }
+
+    /**
+     * This method interpolates the gradient at n iterations, the colors of a
+     * gradient of k colors lie at 0, 1/k, ..., (k-1)/k of the range.
+     */
+    private int interpolate(double n) {
+        double t = n * this.scale;
+        int i = (int) t;
+        if (i >= this.stops.length - 1)
+            return this.stops[this.stops.length - 1];
+        double u = t - (double) i;
+        int from = this.stops[i];
+        int to = this.stops[i + 1];
+        int r = mix((from >> 16) & 0xFF, (to >> 16) & 0xFF, u);
+        int g = mix((from >> 8) & 0xFF, (to >> 8) & 0xFF, u);
+        int b = mix(from & 0xFF, to & 0xFF, u);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int mix(int from, int to, double u) {
+        return (int) ((double) from + (double) (to - from) * u + 0.5D);
+    }
+
+    /**
+     * @return true if this palette has been created for the same colors and nMax
+     */
+    boolean matches(int innerColor, int[] gradient, int nMax) {
+        if (this.innerColor != innerColor || this.nMax != nMax || this.stops.length != gradient.length)
+            return false;
+        for (int i = 0; i < gradient.length; i++)
+            if (this.stops[i] != gradient[gradient.length - 1 - i])
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,372 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes the iteration data of a Mandelbrot object on worker processes (see
+ * RenderWorker). The area is split into strips of rows, which are handed out to
+ * the workers one at a time, so fast workers get more strips than slow ones.
+ *
+ * A strip whose worker fails or does not answer in time is given to another
+ * worker. A worker that fails several times in a row is no longer used, and
+ * strips that failed too often or remain when no worker is left are computed
+ * by this process. Every worker receives the configuration and the precision
+ * of the coordinator, so all strips are computed with the same arithmetic.
+ *
+ * Protocol (big-endian): the coordinator sends MAGIC once per connection, then
+ * CONFIG (image width and height, precision, YAML configuration) and any
+ * number of STRIP requests (first and last row + 1). The worker answers every
+ * message with OK or ERROR and a message, a strip is followed by its iteration
+ * data as runs of equal values (see writeRuns()).
+ */
+class DistributedRenderer {
+    static final int MAGIC = 0x4D424452; // "MBDR"
+    static final byte CONFIG = 1;
+    static final byte STRIP = 2;
+    static final byte OK = 0;
+    static final byte ERROR = -1;
+
+    private static final int MAX_ATTEMPTS = 3; // Attempts of a strip before it is computed by the coordinator
+    private static final int MAX_FAILURES = 3; // Failures in a row after which a worker is no longer used
+    private static final int CONNECT_TIMEOUT = 5000; // ms
+    private static final int STRIP_TIMEOUT = 600000; // ms a worker may take for a strip
+    private static final int RETRY_DELAY = 200; // ms before a worker is used again after a failure
+    private static final int POLL_INTERVAL = 100; // ms
+
+    private final Mandelbrot mandelbrot;
+    private final List<InetSocketAddress> workers;
+    private final int rows;
+    private final String config;
+    private final int[] iterationData;
+    private final LinkedBlockingQueue<Strip> pending = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<Strip> local = new ConcurrentLinkedQueue<>();
+    private final Map<String, AtomicInteger> stripsPerWorker = new LinkedHashMap<>();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger completedRows = new AtomicInteger();
+    private final LongAdder totalIterations = new LongAdder();
+    private int localStrips = 0;
+    private int percentageReported = 0; // Last percentage handed to onProgress
+    private CountDownLatch remaining;
+
+    /**
+     * @param mandelbrot Mandelbrot object whose area is computed, its precision
+     *                   must have been selected
+     * @param config     YAML configuration of the object
+     * @param workers    addresses of the workers
+     * @param rows       number of rows of a strip
+     */
+    DistributedRenderer(Mandelbrot mandelbrot, String config, List<InetSocketAddress> workers, int rows) {
+        this.mandelbrot = mandelbrot;
+        this.config = config;
+        this.workers = workers;
+        this.rows = Math.max(1, rows);
+        this.iterationData = new int[mandelbrot.getAreaWidth() * mandelbrot.getAreaHeight()];
+        for (InetSocketAddress worker : workers)
+            this.stripsPerWorker.put(worker.getHostString() + ":" + worker.getPort(), new AtomicInteger());
+    }
+
+    /**
+     * This method computes all strips and returns when every one of them is
+     * done.
+     *
+     * @param onProgress called with the percentage completed
+     * @return the iteration data of the area
+     */
+    int[] run(Mandelbrot.Executable<Integer> onProgress) throws InterruptedException {
+        int height = this.mandelbrot.getAreaHeight();
+        for (int y = 0; y < height; y += this.rows)
+            this.pending.add(new Strip(y, Math.min(y + this.rows, height)));
+        this.remaining = new CountDownLatch(this.pending.size());
+
+        List<Thread> threads = new ArrayList<>();
+        for (InetSocketAddress worker : this.workers) {
+            Thread thread = new Thread(() -> this.useWorker(worker, onProgress), "coordinator-" + worker);
+            thread.start();
+            threads.add(thread);
+        }
+
+        boolean prepared = false;
+        while (!this.remaining.await(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (threads.stream().noneMatch(Thread::isAlive))
+                this.pending.drainTo(this.local);
+            Strip strip;
+            while ((strip = this.local.poll()) != null) {
+                if (!prepared) {
+                    this.mandelbrot.prepareRows();
+                    prepared = true;
+                }
+                this.complete(strip, this.mandelbrot.computeRows(strip.yBegin, strip.yEnd), onProgress);
+                this.localStrips++;
+            }
+        }
+        for (Thread thread : threads)
+            thread.join();
+        return this.iterationData;
+    }
+
+    /**
+     * This method hands strips to one worker until all strips are done or the
+     * worker has failed MAX_FAILURES times in a row.
+     */
+    private void useWorker(InetSocketAddress address, Mandelbrot.Executable<Integer> onProgress) {
+        Connection connection = null;
+        int failures = 0;
+        try {
+            while (this.remaining.getCount() > 0) {
+                Strip strip = this.pending.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (strip == null)
+                    continue;
+                try {
+                    if (connection == null)
+                        connection = new Connection(address, this.mandelbrot, this.config);
+                    long start = System.nanoTime();
+                    int[] data = connection.compute(strip.yBegin, strip.yEnd, this.mandelbrot.getAreaWidth());
+                    long time = System.nanoTime() - start;
+                    long iterations = this.complete(strip, data, onProgress);
+                    if (iterations >= 0) {
+                        this.stripsPerWorker.get(address.getHostString() + ":" + address.getPort())
+                                .incrementAndGet();
+                        RenderMetrics metrics = this.mandelbrot.getMetrics();
+                        if (metrics != null)
+                            metrics.addWork(data.length, time, iterations);
+                    }
+                    failures = 0;
+                } catch (IOException e) {
+                    if (connection != null)
+                        connection.close();
+                    connection = null;
+                    this.retries.incrementAndGet();
+                    if (++strip.attempts >= MAX_ATTEMPTS)
+                        this.local.add(strip);
+                    else
+                        this.pending.add(strip);
+                    if (++failures >= MAX_FAILURES)
+                        return;
+                    Thread.sleep(RETRY_DELAY << failures);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connection != null)
+                connection.close();
+        }
+    }
+
+    /**
+     * This method copies the iteration data of a strip into the area and adds it
+     * to the histogram of the metrics. The time of strips that have been computed
+     * by this process is recorded per tile by the render pool.
+     *
+     * @return the number of iterations of the strip or -1 if the strip had
+     *         already been completed
+     */
+    private long complete(Strip strip, int[] data, Mandelbrot.Executable<Integer> onProgress) {
+        if (!strip.done.compareAndSet(false, true))
+            return -1;
+        System.arraycopy(data, 0, this.iterationData, strip.yBegin * this.mandelbrot.getAreaWidth(), data.length);
+        long iterations = 0;
+        for (int value : data)
+            iterations += value;
+        this.totalIterations.add(iterations);
+        RenderMetrics metrics = this.mandelbrot.getMetrics();
+        if (metrics != null)
+            metrics.addToHistogram(data, 0, data.length);
+        int completed = this.completedRows.addAndGet(strip.yEnd - strip.yBegin);
+        this.remaining.countDown();
+        int percentage = (int) Math.round(completed * 100.0D / this.mandelbrot.getAreaHeight());
+        synchronized (this.completedRows) {
+            if (this.remaining.getCount() > 0 && percentage > this.percentageReported) {
+                this.percentageReported = percentage;
+                onProgress.run(percentage);
+            }
+        }
+        return iterations;
+    }
+
+    /**
+     * @return the number of strips every worker has computed
+     */
+    Map<String, AtomicInteger> getStripsPerWorker() {
+        return this.stripsPerWorker;
+    }
+
+    /**
+     * @return the sum of the numbers of iterations of all strips
+     */
+    long getTotalIterations() {
+        return this.totalIterations.sum();
+    }
+
+    int getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * @return the number of strips that have been computed by the coordinator
+     */
+    int getLocalStrips() {
+        return this.localStrips;
+    }
+
+    /**
+     * This method writes iteration data as runs of equal values, every run as
+     * the value and its length in variable-length encoding (7 bits per byte).
+     */
+    static void writeRuns(DataOutputStream out, int[] data) throws IOException {
+        int i = 0;
+        while (i < data.length) {
+            int value = data[i];
+            int end = i + 1;
+            while (end < data.length && data[end] == value)
+                end++;
+            writeVarInt(out, value);
+            writeVarInt(out, end - i);
+            i = end;
+        }
+    }
+
+    static void readRuns(DataInputStream in, int[] data) throws IOException {
+        int i = 0;
+        while (i < data.length) {
+            int value = readVarInt(in);
+            int length = readVarInt(in);
+            if (length <= 0 || length > data.length - i)
+                throw new IOException("Corrupt iteration data");
+            for (int end = i + length; i < end; i++)
+                data[i] = value;
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupt iteration data");
+    }
+
+    static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 24)
+            throw new IOException("Corrupt message");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method reads the answer of a worker.
+     *
+     * @throws IOException if the worker has answered with an error
+     */
+    static void readStatus(DataInputStream in) throws IOException {
+        byte status = in.readByte();
+        if (status == ERROR)
+            throw new IOException("The worker failed: " + readText(in));
+        if (status != OK)
+            throw new IOException("Corrupt answer of the worker");
+    }
+
+    /**
+     * A strip of rows of the area
+     */
+    private static class Strip {
+        private final int yBegin;
+        private final int yEnd;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private int attempts = 0;
+
+        private Strip(int yBegin, int yEnd) {
+            this.yBegin = yBegin;
+            this.yEnd = yEnd;
+        }
+    }
+
+    /**
+     * A connection to a worker that has received the configuration
+     */
+    private static class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private Connection(InetSocketAddress address, Mandelbrot mandelbrot, String config) throws IOException {
+            this.socket = new Socket();
+            try {
+                this.socket.connect(address, CONNECT_TIMEOUT);
+                this.socket.setSoTimeout(STRIP_TIMEOUT);
+                this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+                this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+                this.out.writeInt(MAGIC);
+                this.out.writeByte(CONFIG);
+                this.out.writeInt(mandelbrot.getFullWidth());
+                this.out.writeInt(mandelbrot.getFullHeight());
+                writeText(this.out, mandelbrot.getPrecision().toString());
+                writeText(this.out, config);
+                this.out.flush();
+                readStatus(this.in);
+            } catch (IOException e) {
+                this.close();
+                throw e;
+            }
+        }
+
+        private int[] compute(int yBegin, int yEnd, int width) throws IOException {
+            this.out.writeByte(STRIP);
+            this.out.writeInt(yBegin);
+            this.out.writeInt(yEnd);
+            this.out.flush();
+            try {
+                readStatus(this.in);
+                int[] data = new int[width * (yEnd - yBegin)];
+                readRuns(this.in, data);
+                return data;
+            } catch (EOFException e) {
+                throw new IOException("The worker has closed the connection", e);
+            }
+        }
+
+        private void close() {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Same as VectorKernel but with floats, so a vector holds twice as many pixels.
+ * It is only used if the precision float is chosen. The arithmetic is the same
+ * as in Mandelbrot.iterateFloat(), so both kernels produce the same iteration
+ * data.
+ * The numbers of iterations are counted in an IntVector with the same number of
+ * lanes, because floats cannot count beyond 2^24.
+ */
+class FloatVectorKernel implements Mandelbrot.RowKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> COUNT_SPECIES = VectorSpecies.of(int.class, SPECIES.vectorShape());
+
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    public void iterateRow(Mandelbrot mandelbrot, double s, double cIm, int xBegin, int xEnd, int[] out, int offset) {
+        final int lanes = SPECIES.length();
+        final int nMax = mandelbrot.getNMax();
+        final double minRe = mandelbrot.getMinRe();
+        final float escape = Mandelbrot.ESCAPE_RADIUS * Mandelbrot.ESCAPE_RADIUS;
+        final float tolerance = (float) mandelbrot.periodicityTolerance;
+        final boolean interiorCheck = mandelbrot.useInteriorCheck;
+        final boolean periodicityCheck = mandelbrot.usePeriodicityCheck;
+
+        float[] cReArray = new float[lanes];
+        int[] countArray = new int[lanes];
+        boolean[] activeArray = new boolean[lanes];
+        FloatVector vCIm = FloatVector.broadcast(SPECIES, (float) cIm);
+
+        for (int x = xBegin; x < xEnd; x += lanes) {
+            for (int i = 0; i < lanes; i++) {
+                double cRe = minRe + s * (double) (x + i);
+                cReArray[i] = (float) cRe;
+                activeArray[i] = x + i < xEnd && !(interiorCheck && Mandelbrot.isInCardioidOrBulb(cRe, cIm));
+                countArray[i] = activeArray[i] ? 0 : nMax;
+            }
+            FloatVector vCRe = FloatVector.fromArray(SPECIES, cReArray, 0);
+            IntVector count = IntVector.fromArray(COUNT_SPECIES, countArray, 0);
+            VectorMask<Float> active = VectorMask.fromArray(SPECIES, activeArray, 0);
+
+            FloatVector zRe = FloatVector.zero(SPECIES);
+            FloatVector zIm = FloatVector.zero(SPECIES);
+            FloatVector savedRe = zRe;
+            FloatVector savedIm = zIm;
+            VectorMask<Float> periodic = SPECIES.maskAll(false);
+            int checkpoint = 8;
+
+            for (int n = 0; n < nMax && active.anyTrue(); ++n) {
+                FloatVector sqrZRe = zRe.mul(zRe).sub(zIm.mul(zIm));
+                FloatVector sqrZIm = zRe.mul(zIm).add(zIm.mul(zRe));
+                zRe = sqrZRe.add(vCRe);
+                zIm = sqrZIm.add(vCIm);
+
+                VectorMask<Float> escaped = zRe.mul(zRe).add(zIm.mul(zIm)).compare(VectorOperators.GT, escape);
+                active = active.andNot(escaped);
+
+                if (periodicityCheck) {
+                    periodic = zRe.sub(savedRe).abs().compare(VectorOperators.LE, tolerance)
+                            .and(zIm.sub(savedIm).abs().compare(VectorOperators.LE, tolerance)).and(active)
+                            .or(periodic);
+                    active = active.andNot(periodic);
+                    if (n == checkpoint) {
+                        savedRe = zRe;
+                        savedIm = zIm;
+                        checkpoint <<= 1;
+                    }
+                }
+
+                count = count.add(1, active.cast(COUNT_SPECIES));
+            }
+
+            count.blend(nMax, periodic.cast(COUNT_SPECIES)).intoArray(countArray, 0);
+            int end = Math.min(lanes, xEnd - x);
+            System.arraycopy(countArray, 0, out, offset + x, end);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A directory of iteration data files. Every file is named after the hash of
+ * the view parameters it was computed for, so a view that has been computed
+ * before can be colored again without computing it. If the files take up more
+ * than the maximum size, the least recently used files are deleted.
+ *
+ * Each file consists of a header (magic number, width, height, nMax, bytes per
+ * pixel) followed by the iteration data, stored with 1, 2 or 4 bytes per pixel
+ * depending on nMax. Files are read through a memory mapping.
+ */
+class IterationCache {
+    private static final int MAGIC = 0x4D424331; // "MBC1"
+    private static final int HEADER_SIZE = 20;
+    private static final String EXTENSION = ".mbc";
+
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * @param directory directory of the cache files, created if it does not exist
+     * @param maxSize   maximum size of all cache files in bytes
+     */
+    IterationCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the iteration data stored for the key or null if there is none
+     */
+    int[] load(String key, int width, int height, int nMax) {
+        File file = this.getFile(key);
+        if (!file.isFile())
+            return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != width || buffer.getInt() != height
+                    || buffer.getInt() != nMax)
+                return null;
+            int bytesPerPixel = buffer.getInt();
+            int[] data = new int[width * height];
+            if (bytesPerPixel == 1) {
+                for (int i = 0; i < data.length; i++)
+                    data[i] = buffer.get() & 0xFF;
+            } else if (bytesPerPixel == 2) {
+                for (int i = 0; i < data.length; i++)
+                    data[i] = buffer.getShort() & 0xFFFF;
+            } else {
+                buffer.asIntBuffer().get(data);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method stores iteration data and evicts the least recently used files
+     * if the cache gets too large.
+     */
+    void store(String key, int[] data, int width, int height, int nMax) throws IOException {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs())
+            throw new IOException("The cache directory '" + this.directory + "' could not be created");
+        int bytesPerPixel = nMax <= 0xFF ? 1 : (nMax <= 0xFFFF ? 2 : 4);
+        long size = HEADER_SIZE + (long) data.length * bytesPerPixel;
+
+        File temp = File.createTempFile("iterations", ".tmp", this.directory);
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(width).putInt(height).putInt(nMax).putInt(bytesPerPixel);
+            if (bytesPerPixel == 1) {
+                for (int value : data)
+                    buffer.put((byte) value);
+            } else if (bytesPerPixel == 2) {
+                for (int value : data)
+                    buffer.putShort((short) value);
+            } else {
+                buffer.asIntBuffer().put(data);
+            }
+            buffer.force();
+        }
+        Files.move(temp.toPath(), this.getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        this.evict();
+    }
+
+    /**
+     * This method deletes the least recently used files until all files together
+     * are not larger than the maximum size.
+     */
+    private void evict() {
+        File[] files = this.directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null)
+            return;
+        long total = 0;
+        for (File file : files)
+            total += file.length();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - 1 && total > this.maxSize; i++) {
+            long length = files[i].length();
+            if (files[i].delete())
+                total -= length;
+        }
+    }
+
+    private File getFile(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++)
+                name.append(String.format("%02x", hash[i]));
+            return new File(this.directory, name + EXTENSION);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
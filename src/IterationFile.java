@@ -0,0 +1,304 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The iteration data of a built area together with the configuration it was
+ * built with (.mbi file), so it can be colored again without computing it.
+ *
+ * A file consists of a header (magic number, width and height of the image and
+ * of the area, nMax, bytes per pixel, flags, the YAML configuration) and the
+ * offsets of all rows, followed by the rows. Every row is stored in the
+ * smaller of two forms: the differences between neighboring pixels as runs of
+ * equal differences (the difference in zigzag and the length in
+ * variable-length encoding), which turns flat regions and steady gradients
+ * into a few bytes, or the plain values with 1, 2 or 4 bytes per pixel
+ * depending on nMax. If the area was built with smooth coloring, every row is
+ * followed by the fractional parts of its pixels, quantized to 16 bits and
+ * stored in the same way. The quantization step of 3/65535 of an iteration is
+ * far below what a color gradient resolves, but a recolored image may differ
+ * from the original in the last bit of a color channel. Files are read through
+ * memory mappings of bands of rows, which are decoded in parallel.
+ */
+class IterationFile {
+    static final String EXTENSION = ".mbi";
+
+    private static final int MAGIC = 0x4D424931; // "MBI1"
+    private static final byte SMOOTH = 1; // Flag: the fractional parts follow the rows
+    private static final byte RAW = 0; // Row of plain values
+    private static final byte RUNS = 1; // Row of runs of equal differences
+    private static final int BAND_ROWS = 256; // Rows that are encoded before they are written
+    private static final float SMOOTH_MIN = -1.0F; // Range of the fractional parts
+    private static final float SMOOTH_MAX = 2.0F;
+    private static final float SMOOTH_SCALE = 0xFFFF / (SMOOTH_MAX - SMOOTH_MIN);
+
+    final int fullWidth;
+    final int fullHeight;
+    final int width;
+    final int height;
+    final int nMax;
+    final String config;
+    final int[] data;
+    final float[] smooth;
+
+    private IterationFile(int fullWidth, int fullHeight, int width, int height, int nMax, String config, int[] data,
+            float[] smooth) {
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+        this.width = width;
+        this.height = height;
+        this.nMax = nMax;
+        this.config = config;
+        this.data = data;
+        this.smooth = smooth;
+    }
+
+    /**
+     * This method writes iteration data. The rows are encoded in parallel in
+     * bands of BAND_ROWS rows, so only one band is held in memory.
+     *
+     * @param smooth fractional parts of the numbers of iterations or null
+     * @param config YAML configuration of the area
+     */
+    static void write(File file, int fullWidth, int fullHeight, int width, int height, int nMax, String config,
+            int[] data, float[] smooth) throws IOException {
+        int bytesPerPixel = getBytesPerPixel(nMax);
+        byte[] configBytes = config.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(30 + configBytes.length);
+        header.putInt(MAGIC).putInt(fullWidth).putInt(fullHeight).putInt(width).putInt(height).putInt(nMax);
+        header.put((byte) bytesPerPixel).put(smooth != null ? SMOOTH : 0);
+        header.putInt(configBytes.length).put(configBytes).flip();
+        long[] offsets = new long[height + 1];
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            writeFully(channel, header);
+            long position = header.limit() + 8L * offsets.length;
+            channel.position(position);
+            byte[][] rows = new byte[Math.min(BAND_ROWS, height)][];
+            for (int band = 0; band < height; band += BAND_ROWS) {
+                final int bandBegin = band;
+                final int bandEnd = Math.min(band + BAND_ROWS, height);
+                Mandelbrot.forEachRows(bandEnd - bandBegin, (yBegin, yEnd) -> {
+                    int[] fractions = smooth != null ? new int[width] : null;
+                    for (int y = yBegin; y < yEnd; y++) {
+                        rows[y] = encodeRow(data, (bandBegin + y) * width, width, bytesPerPixel);
+                        if (smooth != null) {
+                            for (int x = 0; x < width; x++)
+                                fractions[x] = Math.round((smooth[(bandBegin + y) * width + x] - SMOOTH_MIN)
+                                        * SMOOTH_SCALE);
+                            byte[] smoothRow = encodeRow(fractions, 0, width, 2);
+                            byte[] row = Arrays.copyOf(rows[y], rows[y].length + smoothRow.length);
+                            System.arraycopy(smoothRow, 0, row, rows[y].length, smoothRow.length);
+                            rows[y] = row;
+                        }
+                    }
+                });
+                for (int y = bandBegin; y < bandEnd; y++) {
+                    offsets[y] = position;
+                    writeFully(channel, ByteBuffer.wrap(rows[y - bandBegin]));
+                    position += rows[y - bandBegin].length;
+                }
+            }
+            offsets[height] = position;
+            ByteBuffer table = ByteBuffer.allocate(8 * offsets.length);
+            table.asLongBuffer().put(offsets);
+            channel.position(header.limit());
+            writeFully(channel, table);
+        }
+    }
+
+    /**
+     * This method reads an iteration data file.
+     *
+     * @throws IOException if the file cannot be read or is not a valid iteration
+     *                     data file
+     */
+    static IterationFile read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < 30)
+                throw new IOException("'" + file + "' is not an iteration data file");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 30));
+            if (header.getInt() != MAGIC)
+                throw new IOException("'" + file + "' is not an iteration data file");
+            int fullWidth = header.getInt();
+            int fullHeight = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            int nMax = header.getInt();
+            int bytesPerPixel = header.get();
+            boolean hasSmooth = (header.get() & SMOOTH) != 0;
+            int configLength = header.getInt();
+            long tableBegin = 30L + configLength;
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE || nMax < 0
+                    || bytesPerPixel != getBytesPerPixel(nMax) || configLength < 0
+                    || tableBegin + 8L * (height + 1) > size)
+                throw new IOException("The iteration data file '" + file + "' is corrupt");
+
+            MappedByteBuffer meta = channel.map(FileChannel.MapMode.READ_ONLY, 30, configLength + 8L * (height + 1));
+            byte[] configBytes = new byte[configLength];
+            meta.get(configBytes);
+            long[] offsets = new long[height + 1];
+            meta.asLongBuffer().get(offsets);
+            for (int y = 0; y < height; y++)
+                if (offsets[y] < tableBegin + 8L * (height + 1) || offsets[y + 1] <= offsets[y])
+                    throw new IOException("The iteration data file '" + file + "' is corrupt");
+            if (offsets[height] > size)
+                throw new IOException("The iteration data file '" + file + "' is corrupt");
+
+            int[] data = new int[width * height];
+            float[] smooth = hasSmooth ? new float[data.length] : null;
+            try {
+                Mandelbrot.forEachRows(height, (yBegin, yEnd) -> {
+                    try {
+                        MappedByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, offsets[yBegin],
+                                offsets[yEnd] - offsets[yBegin]);
+                        int[] fractions = smooth != null ? new int[width] : null;
+                        for (int y = yBegin; y < yEnd; y++) {
+                            int end = (int) (offsets[y + 1] - offsets[yBegin]);
+                            int position = decodeRow(rows, (int) (offsets[y] - offsets[yBegin]), end, data,
+                                    y * width, width, bytesPerPixel);
+                            if (smooth != null) {
+                                position = decodeRow(rows, position, end, fractions, 0, width, 2);
+                                for (int x = 0; x < width; x++)
+                                    smooth[y * width + x] = fractions[x] / SMOOTH_SCALE + SMOOTH_MIN;
+                            }
+                            if (position != end)
+                                throw new IOException("Corrupt row of iteration data");
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                throw new IOException("The iteration data file '" + file + "' is corrupt", e);
+            }
+            return new IterationFile(fullWidth, fullHeight, width, height, nMax,
+                    new String(configBytes, StandardCharsets.UTF_8), data, smooth);
+        }
+    }
+
+    static int getBytesPerPixel(int nMax) {
+        return nMax <= 0xFF ? 1 : (nMax <= 0xFFFF ? 2 : 4);
+    }
+
+    /**
+     * @return the row from index i on as runs of equal differences or as plain
+     *         values, whichever is shorter, preceded by its form
+     */
+    private static byte[] encodeRow(int[] data, int i, int width, int bytesPerPixel) {
+        int rawLength = 1 + width * bytesPerPixel;
+        ByteBuffer runs = ByteBuffer.allocate(rawLength);
+        runs.put(RUNS);
+        int previous = 0;
+        int x = 0;
+        while (x < width) {
+            int difference = data[i + x] - previous;
+            int end = x + 1;
+            while (end < width && data[i + end] - data[i + end - 1] == difference)
+                end++;
+            if (runs.remaining() < 10)
+                return encodeRaw(data, i, width, bytesPerPixel);
+            putVarInt(runs, (difference << 1) ^ (difference >> 31));
+            putVarInt(runs, end - x);
+            previous = data[i + end - 1];
+            x = end;
+        }
+        byte[] row = new byte[runs.position()];
+        runs.flip().get(row);
+        return row;
+    }
+
+    private static byte[] encodeRaw(int[] data, int i, int width, int bytesPerPixel) {
+        ByteBuffer raw = ByteBuffer.allocate(1 + width * bytesPerPixel);
+        raw.put(RAW);
+        if (bytesPerPixel == 1) {
+            for (int x = 0; x < width; x++)
+                raw.put((byte) data[i + x]);
+        } else if (bytesPerPixel == 2) {
+            for (int x = 0; x < width; x++)
+                raw.putShort((short) data[i + x]);
+        } else {
+            raw.asIntBuffer().put(data, i, width);
+        }
+        return raw.array();
+    }
+
+    /**
+     * This method decodes the row that is stored in the buffer from begin on, but
+     * not beyond end, into the values from index i on.
+     *
+     * @return the position after the row
+     */
+    private static int decodeRow(ByteBuffer buffer, int begin, int end, int[] data, int i, int width,
+            int bytesPerPixel) throws IOException {
+        int position = begin + 1;
+        if (buffer.get(begin) == RAW) {
+            if (end - position < width * bytesPerPixel)
+                throw new IOException("Corrupt row of iteration data");
+            if (bytesPerPixel == 1) {
+                for (int x = 0; x < width; x++)
+                    data[i + x] = buffer.get(position + x) & 0xFF;
+            } else if (bytesPerPixel == 2) {
+                for (int x = 0; x < width; x++)
+                    data[i + x] = buffer.getShort(position + 2 * x) & 0xFFFF;
+            } else {
+                buffer.slice(position, 4 * width).asIntBuffer().get(data, i, width);
+            }
+            return position + width * bytesPerPixel;
+        }
+        int value = 0;
+        int x = 0;
+        int[] varInt = new int[2]; // value and position after it
+        while (x < width) {
+            getVarInt(buffer, position, end, varInt);
+            int difference = (varInt[0] >>> 1) ^ -(varInt[0] & 1);
+            getVarInt(buffer, varInt[1], end, varInt);
+            int length = varInt[0];
+            position = varInt[1];
+            if (length <= 0 || length > width - x)
+                throw new IOException("Corrupt row of iteration data");
+            for (int xEnd = x + length; x < xEnd; x++) {
+                value += difference;
+                data[i + x] = value;
+            }
+        }
+        return position;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void getVarInt(ByteBuffer buffer, int position, int end, int[] result) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35 && position < end; shift += 7) {
+            int b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                result[0] = value;
+                result[1] = position;
+                return;
+            }
+        }
+        throw new IOException("Corrupt row of iteration data");
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -1,22 +1,39 @@
 import java.awt.Desktop;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.awt.*;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.imageio.ImageIO;
-import javax.swing.SwingUtilities;
-import javax.swing.SwingWorker;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.error.YAMLException;
 
@@ -24,9 +41,24 @@ public class Mandelbrot {
     private static final String OUT_OF_MEMORY_ERR = "\n>> An OutOfMemoryError occured. Please reduce the image size and try again. <<";
     private static final int PROGRESS_BAR_WIDTH = 30;
     private static final double DIFF_EQUAL = 1E-15;
-
-    private final int NUMTHREADS = Runtime.getRuntime().availableProcessors();
-    private final int ESCAPE_RADIUS = 2;
+    private static final int SUBDIVISION_MIN_SIZE = 6;
+    private static final int PATTERN_SIZE = 7; // Edge length in pixels of the squares of the background pattern
+    private static final double DEEP_ZOOM_SPACING = 1E-13;
+    private static final double SEED_ALIGNMENT = 1E-6;
+    private static final double MIRROR_ALIGNMENT = 1E-6; // Max distance in pixels between a row and a mirrored row
+    private static final int MIRROR_FRACTIONS = 4; // The axis of previews lies at quarters of rows (see PREVIEW_STEPS)
+    private static final double MIN_REUSE_RATIO = 0.125;
+    private static final int[] PREVIEW_STEPS = { 4, 2 };
+    private static final int PYRAMID_CACHE_SIZE = 256; // Number of tiles kept in memory while writing a pyramid
+    private static final int SERVER_CACHE_SIZE = 512; // Default size in MB of the caches of the HTTP server
+    private static final int SMOOTH_EXTRA_ITERATIONS = 4; // Iterations after the escape for a precise smooth value
+    private static final double LN2 = Math.log(2.0D);
+
+    private static final int NUMTHREADS = Runtime.getRuntime().availableProcessors();
+    private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool(NUMTHREADS);
+    static final int ESCAPE_RADIUS = 2;
+    private static final RowKernel VECTOR_KERNEL = loadVectorKernel("VectorKernel");
+    private static final RowKernel FLOAT_VECTOR_KERNEL = loadVectorKernel("FloatVectorKernel");
 
     public boolean useBackgroundPattern = true;
     public int backgroundColor = 0xFFFFFF;
@@ -34,6 +66,30 @@ public class Mandelbrot {
     public int patternColor1 = 0xcfcfcf;
     public int patternColor2 = 0x999999;
 
+    public int tileSize = 32; // Edge length in pixels of the tiles the area is split into while building
+
+    public boolean useInteriorCheck = true; // Skip points inside of the main cardioid and the period-2 bulb
+    public boolean useSymmetry = true; // Mirror rows below the real axis instead of computing them again
+    public boolean usePeriodicityCheck = true; // Stop iterating as soon as the sequence turns out to be periodic
+    public double periodicityTolerance = 1E-15; // Max distance at which two elements of a sequence count as equal
+    public boolean useVectorKernel = false; // Iterate several pixels at once if the Vector API is available
+    public boolean useSubdivision = false; // Only compute rectangle borders and fill rectangles with a uniform border
+    public boolean verifySubdivision = false; // Compare the subdivided result with a full pass over all pixels
+    public int stripHeight = 64; // Number of image rows that are computed at once by exportImageStreaming()
+    public String cacheDirectory = null; // Directory where iteration data is cached, null to disable the cache
+    public int cacheSize = 1024; // Maximum size of the cache directory in MB
+    public boolean forcePerturbation = false; // Use the deep zoom engine even if doubles are precise enough
+    public String precision = "auto"; // Arithmetic of the iteration: auto, float, double, double-double or perturbation
+    public boolean useSeriesApproximation = true; // Skip the first iterations of a deep zoom for all pixels at once
+    public boolean useProgressiveRendering = false; // Build the area at 1/16 and 1/4 of its pixels first (previews)
+    public int pngCompression = 6; // Compression level of PNG files from 0 (none) to 9 (smallest)
+    public String pngFilter = "none"; // PNG row filter: none, sub, up, average, paeth or adaptive
+    public boolean useSmoothColoring = false; // Color by a continuous number of iterations instead of whole numbers
+    public int supersampling = 1; // Samples of pixels at edges (a square number), 1 to disable anti-aliasing
+    public int supersamplingThreshold = 16; // Difference of a color channel to a neighbor that makes a pixel an edge
+    public boolean keepOrbitState = false; // Keep the last element of all sequences that did not diverge for deepen()
+    public boolean collectMetrics = false; // Measure every tile and worker of a render (see getMetrics())
+
     /**
      * Configuration
      */
@@ -41,6 +97,12 @@ public class Mandelbrot {
     private double minIm; // Bottom side of the area of the complex plane
     private double maxRe; // Right side of the area of the complex plane
     private double maxIm; // Top side of the area of the complex plane
+    private BigDecimal exactMinRe; // Exact values of the four sides above which are rounded to doubles
+    private BigDecimal exactMinIm;
+    private BigDecimal exactMaxRe;
+    private BigDecimal exactMaxIm;
+    private double rangeRe; // Width of the area of the complex plane
+    private double rangeIm; // Height of the area of the complex plane
     private int nMax; // Maximum number of iterations
     private int innerColor; // Color for points inside the mandelbrot set
     private int[] colorGradient; // A color gradient for all points outside of the mandelbrot set
@@ -49,12 +111,35 @@ public class Mandelbrot {
      * Data for the calculation
      */
     private int[] iterationData;
-    private int rowsCompleted = 0;
+    private float[] smoothData; // Fractional parts of the numbers of iterations if useSmoothColoring is set
+    private int[] edgePixels; // Indices of the supersampled pixels in ascending order, null if there are none
+    private int[] edgeColors; // Averaged colors of the supersampled pixels
+    private final AtomicLong pixelsCompleted = new AtomicLong();
+    private long pixelsTotal;
     private int percentageCompleted = 0;
-    private int finishedThreads = 0;
     private long startTime;
-    private SwingWorker<int[], Integer>[] workerThreads;
-    private int[] colorPallete;
+    private CompletableFuture<int[]> renderFuture;
+    private int subdivisionMismatches = -1;
+    private ReferenceOrbit referenceOrbit; // Reference orbit of a deep zoom, null for all other builds
+    private Precision tier = Precision.DOUBLE; // Precision of the current build (see getPrecision())
+    private double[] exactOrigin; // minRe, its rounding error, maxIm and its rounding error for double-doubles
+    private double[] exactSpacing; // Distance of two pixels and its rounding error for double-doubles
+    private boolean loadedFromCache = false;
+    private OrbitState orbitState; // Pixels that did not diverge if keepOrbitState is set
+    private Seed seed; // Iteration data of the object this one has been derived from
+    private int reusedPixels = -1;
+    private final LongAdder iterationSum = new LongAdder(); // Sum of the iterations of all pixels, added while building
+    private int mirrorBegin = 0; // First row that is mirrored from the other side of the real axis
+    private int mirrorEnd = 0; // Last mirrored row + 1
+    private double mirrorSum = Double.NaN; // Sum of the indices of two rows that mirror each other or NaN
+    private volatile Mandelbrot currentPreview; // Preview that is being built during a progressive build
+    private ColorPalette colorPalette;
+    private volatile int[] patternRow; // Template of the rows of the background pattern (see getPatternRow())
+    private long paletteTime; // Time in ns it took to get the color palette
+    private RenderMetrics metrics; // Measurements of the last render if collectMetrics is set
+    private long encodeTime = -1; // Time in ns the last image took to be encoded and written
+    private long encodedPixels;
+    private String encodedFormat;
 
     private int fullWidth; // Width of the image
     private int fullHeight; // Height of the image
@@ -70,16 +155,22 @@ public class Mandelbrot {
     private int offsetX;
     private int offsetY;
 
-    private boolean isBuilt = false;
-    private boolean isBuilding = false;
-    private boolean hasBeenAborted = false;
+    private volatile boolean isBuilt = false;
+    private volatile boolean isBuilding = false;
+    private volatile boolean hasBeenAborted = false;
 
     private static boolean isVerbose = false;
     private static boolean shouldOpen = false;
+    private static boolean shouldStream = false;
+    private static boolean isBatch = false;
+    private static boolean isPyramid = false;
+
+    private static ColorPalette sharedPalette; // Last color palette that has been created (see getColorPalette())
 
     public Mandelbrot(Mandelbrot other) {
-        this(other.fullWidth, other.fullHeight, other.minRe, other.minIm, other.maxRe, other.maxIm, other.nMax,
-                other.innerColor, other.colorGradient);
+        this(other.fullWidth, other.fullHeight, other.exactMinRe, other.exactMinIm, other.exactMaxRe,
+                other.exactMaxIm, other.nMax, other.innerColor, other.colorGradient);
+        this.copyOptions(other).reuse(other);
     }
 
     public Mandelbrot(Map<String, Object> config, int fullWidth, int fullHeight)
@@ -87,13 +178,8 @@ public class Mandelbrot {
         try {
             this.fullWidth = fullWidth;
             this.fullHeight = fullHeight;
-            this.minRe = (Double) config.get("minRe");
-            this.minIm = (Double) config.get("minIm");
-            this.maxRe = (Double) config.get("maxRe");
-            this.maxIm = (Double) config.get("maxIm");
-            double lenRe = maxRe - minRe;
-            double lenIm = maxIm - minIm;
-            if (lenRe < 0 || Math.abs(lenRe) < DIFF_EQUAL || lenIm < 0 || Math.abs(lenIm) < DIFF_EQUAL)
+            if (!this.setArea(toExact(config.get("minRe")), toExact(config.get("minIm")),
+                    toExact(config.get("maxRe")), toExact(config.get("maxIm"))))
                 throw new IllegalArgumentException("The area of the complex plane is invalid or too small");
             this.calculateAreaDimensions(this.fullWidth, this.fullHeight);
             this.nMax = (Integer) config.get("nMax");
@@ -101,7 +187,8 @@ public class Mandelbrot {
             this.colorGradient = ((ArrayList<Integer>) config.get("colorGradient")).stream().mapToInt(i -> i).toArray();
             if (this.colorGradient.length == 0)
                 throw new IllegalArgumentException("There must be at least one color in the color gradient");
-            this.colorPallete = createColorPalette(this.innerColor, this.colorGradient, this.nMax);
+            this.updateColorPalette();
+            this.readOptions(config);
         } catch (Exception e) {
             if (e instanceof IllegalArgumentException) {
                 throw e;
@@ -126,15 +213,20 @@ public class Mandelbrot {
      */
     public Mandelbrot(int fullWidth, int fullHeight, double minRe, double minIm, double maxRe, double maxIm, int nMax,
             int innerColor, int[] colorGradient) throws IllegalArgumentException {
+        this(fullWidth, fullHeight, new BigDecimal(minRe), new BigDecimal(minIm), new BigDecimal(maxRe),
+                new BigDecimal(maxIm), nMax, innerColor, colorGradient);
+    }
+
+    /**
+     * Same as above, but the area of the complex plane is given with arbitrary
+     * precision. Areas that are too small for doubles are built with the deep
+     * zoom engine (perturbation theory).
+     */
+    public Mandelbrot(int fullWidth, int fullHeight, BigDecimal minRe, BigDecimal minIm, BigDecimal maxRe,
+            BigDecimal maxIm, int nMax, int innerColor, int[] colorGradient) throws IllegalArgumentException {
         this.fullWidth = fullWidth;
         this.fullHeight = fullHeight;
-        this.minRe = minRe;
-        this.minIm = minIm;
-        this.maxRe = maxRe;
-        this.maxIm = maxIm;
-        double lenRe = maxRe - minRe;
-        double lenIm = maxIm - minIm;
-        if (lenRe < 0 || Math.abs(lenRe) < DIFF_EQUAL || lenIm < 0 || Math.abs(lenIm) < DIFF_EQUAL)
+        if (!this.setArea(minRe, minIm, maxRe, maxIm))
             throw new IllegalArgumentException("The area of the complex plane is too small");
         this.calculateAreaDimensions(this.fullWidth, this.fullHeight);
         this.nMax = nMax;
@@ -142,12 +234,233 @@ public class Mandelbrot {
         this.colorGradient = colorGradient;
         if (this.colorGradient.length == 0)
             throw new IllegalArgumentException("There must be at least one color in the color gradient");
-        this.colorPallete = createColorPalette(this.innerColor, this.colorGradient, this.nMax);
+        this.updateColorPalette();
+    }
+
+    /**
+     * This method sets the area of the complex plane.
+     * 
+     * @return false if the area is empty
+     */
+    private boolean setArea(BigDecimal minRe, BigDecimal minIm, BigDecimal maxRe, BigDecimal maxIm) {
+        BigDecimal lenRe = maxRe.subtract(minRe);
+        BigDecimal lenIm = maxIm.subtract(minIm);
+        if (lenRe.signum() <= 0 || lenIm.signum() <= 0)
+            return false;
+        this.exactMinRe = minRe;
+        this.exactMinIm = minIm;
+        this.exactMaxRe = maxRe;
+        this.exactMaxIm = maxIm;
+        this.minRe = minRe.doubleValue();
+        this.minIm = minIm.doubleValue();
+        this.maxRe = maxRe.doubleValue();
+        this.maxIm = maxIm.doubleValue();
+        this.rangeRe = lenRe.doubleValue();
+        this.rangeIm = lenIm.doubleValue();
+        return this.rangeRe > 0.0D && this.rangeIm > 0.0D;
+    }
+
+    /**
+     * This method converts a coordinate of a YAML configuration, which is either
+     * a number or a string of arbitrary precision.
+     */
+    static BigDecimal toExact(Object value) throws MandelbrotConfigException {
+        if (value instanceof Double)
+            return new BigDecimal((Double) value);
+        if (value instanceof Number)
+            return new BigDecimal(value.toString());
+        try {
+            return new BigDecimal(((String) value).trim());
+        } catch (NumberFormatException e) {
+            throw new MandelbrotConfigException("'" + value + "' is not a valid coordinate");
+        }
+    }
+
+    /**
+     * @return the precision that is needed to tell the pixels of the area apart
+     */
+    private MathContext getMathContext() {
+        double spacing = this.rangeRe / this.areaWidth;
+        int digits = Math.max(34, (int) Math.ceil(-Math.log10(spacing)) + 20);
+        return new MathContext(digits, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * @return true if pixels are too close together for iterate() to tell them
+     *         apart, so the deep zoom engine is used
+     */
+    public boolean isDeepZoom() {
+        return this.getPrecision() == Precision.PERTURBATION;
+    }
+
+    /**
+     * This method chooses the arithmetic of the iteration by the distance s of
+     * two pixels, unless the option precision names one: doubles down to
+     * DEEP_ZOOM_SPACING and the deep zoom engine below. Floats and double-doubles
+     * are only used if they are chosen, floats are not faster than doubles for
+     * the overviews they are precise enough for.
+     */
+    public Precision getPrecision() {
+        if (this.forcePerturbation)
+            return Precision.PERTURBATION;
+        if (!this.precision.equals("auto"))
+            return Precision.parse(this.precision);
+        double spacing = this.rangeRe / this.areaWidth;
+        if (spacing < DEEP_ZOOM_SPACING)
+            return Precision.PERTURBATION;
+        return Precision.DOUBLE;
+    }
+
+    /**
+     * This method fixes the precision of the next build and splits the origin and
+     * the spacing of the pixels into pairs of doubles if they are needed.
+     */
+    private void selectPrecision() {
+        this.tier = this.getPrecision();
+        this.selectAxis();
+        if (this.tier != Precision.DOUBLE_DOUBLE)
+            return;
+        MathContext mc = this.getMathContext();
+        BigDecimal spacing = this.exactMaxRe.subtract(this.exactMinRe).divide(BigDecimal.valueOf(this.areaWidth),
+                mc);
+        this.exactOrigin = new double[4];
+        this.exactSpacing = new double[2];
+        split(this.exactMinRe, this.exactOrigin, 0);
+        split(this.exactMaxIm, this.exactOrigin, 2);
+        split(spacing, this.exactSpacing, 0);
+    }
+
+    /**
+     * This method stores a number as the sum of the nearest double and the
+     * nearest double to the rest.
+     */
+    private static void split(BigDecimal value, double[] target, int index) {
+        double high = value.doubleValue();
+        target[index] = high;
+        target[index + 1] = value.subtract(new BigDecimal(high)).doubleValue();
+    }
+
+    /**
+     * This method reads the optional rendering options of a YAML configuration.
+     * Missing options keep their default values.
+     */
+    private void readOptions(Map<String, Object> config) {
+        if (config.containsKey("interiorCheck"))
+            this.useInteriorCheck = (Boolean) config.get("interiorCheck");
+        if (config.containsKey("symmetry"))
+            this.useSymmetry = (Boolean) config.get("symmetry");
+        if (config.containsKey("periodicityCheck"))
+            this.usePeriodicityCheck = (Boolean) config.get("periodicityCheck");
+        if (config.containsKey("periodicityTolerance"))
+            this.periodicityTolerance = ((Number) config.get("periodicityTolerance")).doubleValue();
+        if (config.containsKey("tileSize"))
+            this.tileSize = (Integer) config.get("tileSize");
+        if (config.containsKey("vectorKernel"))
+            this.useVectorKernel = (Boolean) config.get("vectorKernel");
+        if (config.containsKey("subdivision"))
+            this.useSubdivision = (Boolean) config.get("subdivision");
+        if (config.containsKey("verifySubdivision"))
+            this.verifySubdivision = (Boolean) config.get("verifySubdivision");
+        if (config.containsKey("stripHeight"))
+            this.stripHeight = (Integer) config.get("stripHeight");
+        if (config.containsKey("cache"))
+            this.cacheDirectory = (String) config.get("cache");
+        if (config.containsKey("cacheSize"))
+            this.cacheSize = (Integer) config.get("cacheSize");
+        if (config.containsKey("perturbation"))
+            this.forcePerturbation = (Boolean) config.get("perturbation");
+        if (config.containsKey("precision")) {
+            this.precision = (String) config.get("precision");
+            if (!this.precision.equals("auto"))
+                Precision.parse(this.precision);
+        }
+        if (config.containsKey("seriesApproximation"))
+            this.useSeriesApproximation = (Boolean) config.get("seriesApproximation");
+        if (config.containsKey("progressive"))
+            this.useProgressiveRendering = (Boolean) config.get("progressive");
+        if (config.containsKey("pngCompression")) {
+            this.pngCompression = (Integer) config.get("pngCompression");
+            if (this.pngCompression < 0 || this.pngCompression > 9)
+                throw new IllegalArgumentException("The PNG compression level must be between 0 and 9");
+        }
+        if (config.containsKey("pngFilter")) {
+            this.pngFilter = (String) config.get("pngFilter");
+            PngWriter.parseFilter(this.pngFilter);
+        }
+        if (config.containsKey("smoothColoring"))
+            this.useSmoothColoring = (Boolean) config.get("smoothColoring");
+        if (config.containsKey("supersampling")) {
+            this.supersampling = (Integer) config.get("supersampling");
+            int grid = (int) Math.round(Math.sqrt(this.supersampling));
+            if (this.supersampling < 1 || grid * grid != this.supersampling)
+                throw new IllegalArgumentException(
+                        "The number of samples per pixel must be a square number (1, 4, 9, 16, ...)");
+        }
+        if (config.containsKey("supersamplingThreshold"))
+            this.supersamplingThreshold = (Integer) config.get("supersamplingThreshold");
+    }
+
+    /**
+     * This method takes over the rendering options of another Mandelbrot object.
+     */
+    private Mandelbrot copyOptions(Mandelbrot other) {
+        this.useBackgroundPattern = other.useBackgroundPattern;
+        this.backgroundColor = other.backgroundColor;
+        this.patternColor1 = other.patternColor1;
+        this.patternColor2 = other.patternColor2;
+        this.tileSize = other.tileSize;
+        this.useInteriorCheck = other.useInteriorCheck;
+        this.useSymmetry = other.useSymmetry;
+        this.usePeriodicityCheck = other.usePeriodicityCheck;
+        this.periodicityTolerance = other.periodicityTolerance;
+        this.useVectorKernel = other.useVectorKernel;
+        this.useSubdivision = other.useSubdivision;
+        this.verifySubdivision = other.verifySubdivision;
+        this.stripHeight = other.stripHeight;
+        this.cacheDirectory = other.cacheDirectory;
+        this.cacheSize = other.cacheSize;
+        this.forcePerturbation = other.forcePerturbation;
+        this.precision = other.precision;
+        this.useSeriesApproximation = other.useSeriesApproximation;
+        this.useProgressiveRendering = other.useProgressiveRendering;
+        this.pngCompression = other.pngCompression;
+        this.pngFilter = other.pngFilter;
+        this.useSmoothColoring = other.useSmoothColoring;
+        this.supersampling = other.supersampling;
+        this.supersamplingThreshold = other.supersamplingThreshold;
+        this.keepOrbitState = other.keepOrbitState;
+        this.collectMetrics = other.collectMetrics;
+        return this;
+    }
+
+    /**
+     * This method lets the next build take over the iteration data of another
+     * Mandelbrot object for all pixels both objects have in common.
+     */
+    Mandelbrot reuse(Mandelbrot other) {
+        if (!other.isBuilt || other.iterationData == null)
+            return this;
+        Seed seed = new Seed();
+        seed.data = other.iterationData;
+        seed.smooth = other.smoothData;
+        seed.state = other.orbitState;
+        seed.nMax = other.nMax;
+        seed.width = other.areaWidth;
+        seed.height = other.areaHeight;
+        seed.exactMinRe = other.exactMinRe;
+        seed.exactMaxRe = other.exactMaxRe;
+        seed.exactMaxIm = other.exactMaxIm;
+        seed.useInteriorCheck = other.useInteriorCheck;
+        seed.usePeriodicityCheck = other.usePeriodicityCheck;
+        seed.periodicityTolerance = other.periodicityTolerance;
+        seed.precision = other.tier;
+        this.seed = seed;
+        return this;
     }
 
     private void calculateAreaDimensions(int fullWidth, int fullHeight) {
-        double rangeRe = Math.abs(maxRe - minRe);
-        double rangeIm = Math.abs(maxIm - minIm);
+        double rangeRe = this.rangeRe;
+        double rangeIm = this.rangeIm;
 
         this.areaWidth = (int) Math.ceil((double) fullHeight * (rangeRe / rangeIm));
         this.areaHeight = (int) fullHeight;
@@ -207,12 +520,28 @@ public class Mandelbrot {
         return this.maxIm;
     }
 
+    public BigDecimal getExactMinRe() {
+        return this.exactMinRe;
+    }
+
+    public BigDecimal getExactMinIm() {
+        return this.exactMinIm;
+    }
+
+    public BigDecimal getExactMaxRe() {
+        return this.exactMaxRe;
+    }
+
+    public BigDecimal getExactMaxIm() {
+        return this.exactMaxIm;
+    }
+
     public double getRangeRe() {
-        return this.maxRe - this.minRe;
+        return this.rangeRe;
     }
 
     public double getRangeIm() {
-        return this.maxIm - this.minIm;
+        return this.rangeIm;
     }
 
     public int getNMax() {
@@ -235,107 +564,310 @@ public class Mandelbrot {
         return this.offsetY;
     }
 
+    /**
+     * @return the number of pixels in which the subdivided build differs from a
+     *         full pass or -1 if it has not been verified
+     */
+    public int getSubdivisionMismatches() {
+        return this.subdivisionMismatches;
+    }
+
+    /**
+     * @return the number of pixels whose iteration data has been taken over from
+     *         the object this one has been derived from or -1 if none has been
+     */
+    public int getReusedPixels() {
+        return this.reusedPixels;
+    }
+
+    /**
+     * @return the share of the pixels whose iteration data has been taken over
+     *         from the object this one has been derived from
+     */
+    public double getReuseRatio() {
+        return this.reusedPixels <= 0 ? 0.0D : (double) this.reusedPixels / (double) this.iterationData.length;
+    }
+
+    /**
+     * @return the sum of the numbers of iterations of all pixels, which is
+     *         gathered while the area is built
+     */
+    public long getTotalIterations() {
+        return this.iterationSum.sum();
+    }
+
+    /**
+     * @return the number of rows of the last build that have been mirrored from
+     *         the other side of the real axis instead of being computed
+     */
+    public int getMirroredRows() {
+        return this.mirrorEnd - this.mirrorBegin;
+    }
+
+    /**
+     * @return the number of pixels at edges that have been supersampled or -1 if
+     *         supersampling is disabled
+     */
+    public int getSupersampledPixels() {
+        if (this.supersampling <= 1 || !this.isBuilt)
+            return -1;
+        return this.edgePixels == null ? 0 : this.edgePixels.length;
+    }
+
+    /**
+     * @return the measurements of the last render or null if collectMetrics was
+     *         not set
+     */
+    RenderMetrics getMetrics() {
+        return this.metrics;
+    }
+
     public int[] getAreaIterationArray() {
         if (!isBuilt)
             return null;
         return this.iterationData;
     }
 
+    /**
+     * @return the pixels of the area image (the array is shared with the image)
+     */
     public int[] getAreaRGBArray() {
         if (!isBuilt)
             return null;
         if (this.areaRGBArray != null)
             return this.areaRGBArray;
-        this.areaRGBArray = new int[this.areaWidth * this.areaHeight];
-        for (int i = 0; i < this.iterationData.length; i++)
-            this.areaRGBArray[i] = this.colorPallete[this.iterationData[i]];
+        this.getAreaImage();
         return this.areaRGBArray;
     }
 
+    /**
+     * This method colors the iteration data in parallel, directly into the
+     * raster of the image.
+     */
     public BufferedImage getAreaImage() {
         if (!this.isBuilt)
             return null;
         if (this.areaImage != null)
             return this.areaImage;
-        this.areaImage = new BufferedImage(this.areaWidth, this.areaHeight, BufferedImage.TYPE_INT_RGB);
-        this.areaImage.setRGB(0, 0, this.areaWidth, this.areaHeight, this.getAreaRGBArray(), 0, this.areaWidth);
+        RenderMetrics.ColoringEvent event = new RenderMetrics.ColoringEvent();
+        event.begin();
+        long start = System.nanoTime();
+        BufferedImage image = new BufferedImage(this.areaWidth, this.areaHeight, BufferedImage.TYPE_INT_RGB);
+        final int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        forEachRows(this.areaHeight, (yBegin, yEnd) -> this.colorPixels(rgb, yBegin * this.areaWidth,
+                this.iterationData, this.smoothData, yBegin * this.areaWidth, (yEnd - yBegin) * this.areaWidth));
+        this.recordColoring(event, start, this.areaWidth, this.areaHeight);
+        this.areaRGBArray = rgb;
+        this.areaImage = image;
         return this.areaImage;
     }
 
+    /**
+     * This method creates the background pattern of the full image in parallel,
+     * every row is copied from the template row.
+     */
     public int[] getBackgroundPattern() {
-        int[] pattern = new int[this.fullWidth * this.fullHeight];
-        int s = 7;
-        int maxC = (this.fullWidth - this.fullWidth % s) / s + ((this.fullWidth % s > 0) ? 1 : 0);
-        int maxR = (this.fullHeight - this.fullHeight % s) / s + ((this.fullHeight % s > 0) ? 1 : 0);
-        for (int c = 0; c < maxC; c += 1) {
-            for (int r = 0; r < maxR; r += 1) {
-                int rgb = (c % 2 == r % 2) ? this.patternColor1 : this.patternColor2;
-                for (int x = 0; x < s; x++) {
-                    for (int y = 0; y < s; y++) {
-                        if (r * s + y < this.fullHeight && c * s + x < this.fullWidth)
-                            pattern[(r * s + y) * this.fullWidth + (c * s + x)] = rgb;
-                    }
-                }
-            }
-        }
+        final int[] pattern = new int[this.fullWidth * this.fullHeight];
+        final int[] template = this.getPatternRow();
+        forEachRows(this.fullHeight, (yBegin, yEnd) -> {
+            for (int y = yBegin; y < yEnd; y++)
+                System.arraycopy(template, getPatternShift(y), pattern, y * this.fullWidth, this.fullWidth);
+        });
         return pattern;
     }
 
+    /**
+     * @return a row of the background pattern that is PATTERN_SIZE pixels longer
+     *         than the image, so rows whose squares are shifted by one square
+     *         are copied from PATTERN_SIZE on (see getPatternShift())
+     */
+    private int[] getPatternRow() {
+        int[] row = this.patternRow;
+        if (row != null)
+            return row;
+        row = new int[this.fullWidth + PATTERN_SIZE];
+        for (int x = 0; x < row.length; x += PATTERN_SIZE)
+            Arrays.fill(row, x, Math.min(x + PATTERN_SIZE, row.length),
+                    (x / PATTERN_SIZE) % 2 == 0 ? this.patternColor1 : this.patternColor2);
+        this.patternRow = row;
+        return row;
+    }
+
+    /**
+     * @return the index of the pattern row at which the row y of the image
+     *         begins
+     */
+    private static int getPatternShift(int y) {
+        return (y / PATTERN_SIZE) % 2 == 0 ? 0 : PATTERN_SIZE;
+    }
+
+    /**
+     * @return the pixels of the full image (the array is shared with the image)
+     */
     public int[] getFullRGBArray() {
         if (!this.isBuilt)
             return null;
         if (this.imageRGBArray != null)
             return this.imageRGBArray;
-
-        if (this.useBackgroundPattern)
-            this.imageRGBArray = this.getBackgroundPattern();
-        else {
-            this.imageRGBArray = new int[this.fullWidth * this.fullHeight];
-            Arrays.fill(this.imageRGBArray, this.backgroundColor);
-        }
-
-        int[] areaRGBArray = this.getAreaRGBArray();
-
-        int i = 0;
-        for (int y = offsetY; y < offsetY + this.areaHeight; y++) {
-            for (int x = offsetX; x < offsetX + this.areaWidth; x++) {
-                this.imageRGBArray[this.fullWidth * y + x] = areaRGBArray[i++];
-            }
-        }
+        this.getFullImage();
         return this.imageRGBArray;
     }
 
+    /**
+     * This method creates the full image in a single parallel pass: every row is
+     * filled with the background and the colored iteration data, directly into
+     * the raster of the image.
+     */
     public BufferedImage getFullImage() {
+        if (!this.isBuilt)
+            return null;
         if (this.fullImage != null)
             return this.fullImage;
-        this.fullImage = new BufferedImage(this.fullWidth, this.fullHeight, BufferedImage.TYPE_INT_RGB);
-        this.fullImage.setRGB(0, 0, this.fullWidth, this.fullHeight, this.getFullRGBArray(), 0, this.fullWidth);
+        RenderMetrics.ColoringEvent event = new RenderMetrics.ColoringEvent();
+        event.begin();
+        long start = System.nanoTime();
+        BufferedImage image = new BufferedImage(this.fullWidth, this.fullHeight, BufferedImage.TYPE_INT_RGB);
+        final int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        forEachRows(this.fullHeight, (yBegin, yEnd) -> this.composeRows(rgb, 0, this.iterationData, 0, yBegin, yEnd));
+        this.recordColoring(event, start, this.fullWidth, this.fullHeight);
+        this.imageRGBArray = rgb;
+        this.fullImage = image;
         return this.fullImage;
     }
 
+    private void recordColoring(RenderMetrics.ColoringEvent event, long start, int width, int height) {
+        if (this.metrics != null)
+            this.metrics.addColoringTime(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.commit();
+        }
+    }
+
+    /**
+     * This method writes the rows yBegin to yEnd of the image: the background
+     * around the area and the colored iteration data inside of it.
+     * 
+     * @param rgb         pixels of the image from row rgbY on
+     * @param rgbY        first row of the image that is stored in rgb
+     * @param iterations  iteration data of the area from row iterationsY on
+     * @param iterationsY first row of the area that is stored in iterations
+     */
+    private void composeRows(int[] rgb, int rgbY, int[] iterations, int iterationsY, int yBegin, int yEnd) {
+        float[] smooth = iterations == this.iterationData ? this.smoothData : null;
+        int[] pattern = this.useBackgroundPattern ? this.getPatternRow() : null;
+        for (int y = yBegin; y < yEnd; y++) {
+            int offset = (y - rgbY) * this.fullWidth;
+            int areaY = y - this.offsetY;
+            if (areaY < 0 || areaY >= this.areaHeight) {
+                this.fillBackground(rgb, offset, y, 0, this.fullWidth, pattern);
+                continue;
+            }
+            this.fillBackground(rgb, offset, y, 0, this.offsetX, pattern);
+            this.colorPixels(rgb, offset + this.offsetX, iterations, smooth, (areaY - iterationsY) * this.areaWidth,
+                    this.areaWidth);
+            this.fillBackground(rgb, offset, y, this.offsetX + this.areaWidth, this.fullWidth, pattern);
+        }
+    }
+
+    /**
+     * This method colors count pixels of the iteration data from index i on and
+     * writes them into rgb from index k on.
+     * 
+     * @param smooth fractional parts of the numbers of iterations or null
+     */
+    private void colorPixels(int[] rgb, int k, int[] iterations, float[] smooth, int i, int count) {
+        ColorPalette palette = this.colorPalette;
+        if (smooth == null) {
+            for (int x = 0; x < count; x++)
+                rgb[k + x] = palette.getColor(iterations[i + x]);
+        } else {
+            for (int x = 0; x < count; x++)
+                rgb[k + x] = palette.getColor(iterations[i + x], smooth[i + x]);
+        }
+        if (this.edgePixels == null || iterations != this.iterationData)
+            return;
+        int e = Arrays.binarySearch(this.edgePixels, i);
+        for (e = e < 0 ? -e - 1 : e; e < this.edgePixels.length && this.edgePixels[e] < i + count; e++)
+            rgb[k + this.edgePixels[e] - i] = this.edgeColors[e];
+    }
+
+    /**
+     * This method fills the pixels xBegin to xEnd of the row y of the image with
+     * the background (the same pattern as getBackgroundPattern()).
+     * 
+     * @param pattern the template row of the pattern or null for the background
+     *                color
+     */
+    private void fillBackground(int[] rgb, int offset, int y, int xBegin, int xEnd, int[] pattern) {
+        if (xEnd <= xBegin)
+            return;
+        if (pattern == null)
+            Arrays.fill(rgb, offset + xBegin, offset + xEnd, this.backgroundColor);
+        else
+            System.arraycopy(pattern, getPatternShift(y) + xBegin, rgb, offset + xBegin, xEnd - xBegin);
+    }
+
+    /**
+     * This method splits the rows 0 to rows into ranges that are processed in
+     * parallel on the render pool.
+     */
+    static void forEachRows(int rows, RowRange action) {
+        DEFAULT_POOL.invoke(new RowRangeTask(0, rows, action));
+    }
+
+    private static class RowRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int MIN_ROWS = 16;
+
+        private final int yBegin;
+        private final int yEnd;
+        private final RowRange action;
+
+        RowRangeTask(int yBegin, int yEnd, RowRange action) {
+            this.yBegin = yBegin;
+            this.yEnd = yEnd;
+            this.action = action;
+        }
+
+        protected void compute() {
+            if (this.yEnd - this.yBegin <= MIN_ROWS) {
+                this.action.run(this.yBegin, this.yEnd);
+                return;
+            }
+            int yMid = (this.yBegin + this.yEnd) >>> 1;
+            invokeAll(new RowRangeTask(this.yBegin, yMid, this.action),
+                    new RowRangeTask(yMid, this.yEnd, this.action));
+        }
+    }
+
     public Mandelbrot extendAreaToImageSize() {
 
         double widthFactor = (double) fullWidth / (double) areaWidth;
         double heightFactor = (double) fullHeight / (double) areaHeight;
+        MathContext mc = this.getMathContext();
+        BigDecimal two = BigDecimal.valueOf(2);
 
-        double lengthRe = (maxRe - minRe);
-        double lengthIm = (maxIm - minIm);
+        BigDecimal lengthRe = exactMaxRe.subtract(exactMinRe);
+        BigDecimal lengthIm = exactMaxIm.subtract(exactMinIm);
         if (Math.abs(widthFactor - 1.0D) < DIFF_EQUAL)
-            lengthIm = lengthRe * ((double) fullHeight / fullWidth);
+            lengthIm = lengthRe.multiply(BigDecimal.valueOf(fullHeight)).divide(BigDecimal.valueOf(fullWidth), mc);
 
         if (Math.abs(heightFactor - 1.0D) < DIFF_EQUAL)
-            lengthRe = lengthIm * ((double) fullWidth / fullHeight);
+            lengthRe = lengthIm.multiply(BigDecimal.valueOf(fullWidth)).divide(BigDecimal.valueOf(fullHeight), mc);
 
-        double diffRe = (lengthRe - (maxRe - minRe)) / 2.0D;
-        double diffIm = (lengthIm - (maxIm - minIm)) / 2.0D;
+        BigDecimal diffRe = lengthRe.subtract(exactMaxRe.subtract(exactMinRe)).divide(two, mc);
+        BigDecimal diffIm = lengthIm.subtract(exactMaxIm.subtract(exactMinIm)).divide(two, mc);
 
-        double minReNew = minRe - diffRe;
-        double minImNew = minIm - diffIm;
-        double maxReNew = minReNew + lengthRe;
-        double maxImNew = minImNew + lengthIm;
+        BigDecimal minReNew = exactMinRe.subtract(diffRe);
+        BigDecimal minImNew = exactMinIm.subtract(diffIm);
+        BigDecimal maxReNew = minReNew.add(lengthRe);
+        BigDecimal maxImNew = minImNew.add(lengthIm);
 
         return new Mandelbrot(fullWidth, fullHeight, minReNew, minImNew, maxReNew, maxImNew, nMax, innerColor,
-                colorGradient);
+                colorGradient).copyOptions(this).reuse(this);
     }
 
     /**
@@ -348,31 +880,73 @@ public class Mandelbrot {
      * @return
      */
     public Mandelbrot zoom(double re, double im, double factor) {
-        double rangeRe = Math.abs(this.maxRe - this.minRe);
-        double rangeIm = Math.abs(this.maxIm - this.minIm);
-        double newminRe = -rangeRe / (2.0D * factor) + re;
-        double newminIm = -rangeIm / (2.0D * factor) + im;
-        double newmaxRe = rangeRe / (2.0D * factor) + re;
-        double newmaxIm = rangeIm / (2.0D * factor) + im;
-        return new Mandelbrot(this.fullWidth, this.fullHeight, newminRe, newminIm, newmaxRe, newmaxIm, this.nMax,
-                this.innerColor, this.colorGradient);
+        return this.zoom(new BigDecimal(re), new BigDecimal(im), factor);
+    }
+
+    /**
+     * Same as above, but the center of the new area is given with arbitrary
+     * precision.
+     */
+    public Mandelbrot zoom(BigDecimal re, BigDecimal im, double factor) {
+        MathContext mc = this.getMathContext();
+        BigDecimal divisor = new BigDecimal(2.0D * factor);
+        BigDecimal halfRe = this.exactMaxRe.subtract(this.exactMinRe).abs().divide(divisor, mc);
+        BigDecimal halfIm = this.exactMaxIm.subtract(this.exactMinIm).abs().divide(divisor, mc);
+        return new Mandelbrot(this.fullWidth, this.fullHeight, re.subtract(halfRe), im.subtract(halfIm),
+                re.add(halfRe), im.add(halfIm), this.nMax, this.innerColor, this.colorGradient).copyOptions(this)
+                .reuse(this);
     }
 
     public Mandelbrot resizeImage(int fullWidth, int fullHeight) {
-        return new Mandelbrot(fullWidth, fullHeight, this.minRe, this.minIm, this.maxRe, this.maxIm, this.nMax,
-                this.innerColor, this.colorGradient);
+        return new Mandelbrot(fullWidth, fullHeight, this.exactMinRe, this.exactMinIm, this.exactMaxRe,
+                this.exactMaxIm, this.nMax, this.innerColor, this.colorGradient).copyOptions(this).reuse(this);
     }
 
     public Mandelbrot lolToSize(int fullWidth, int fullHeight) {
+        MathContext mc = this.getMathContext();
+        BigDecimal widthFactor = BigDecimal.valueOf(fullWidth).divide(BigDecimal.valueOf(this.areaWidth), mc);
+        BigDecimal heightFactor = BigDecimal.valueOf(fullHeight).divide(BigDecimal.valueOf(this.areaHeight), mc);
+
+        BigDecimal rangeRe = this.exactMaxRe.subtract(this.exactMinRe);
+        BigDecimal rangeIm = this.exactMaxIm.subtract(this.exactMinIm);
+        BigDecimal maxReNew = this.exactMinRe.add(rangeRe.multiply(widthFactor, mc));
+        BigDecimal minImNew = this.exactMaxIm.subtract(rangeIm.multiply(heightFactor, mc));
 
-        double widthFactor = (double) fullWidth / (double) this.areaWidth;
-        double heightFactor = (double) fullHeight / (double) this.areaHeight;
+        return new Mandelbrot(fullWidth, fullHeight, this.exactMinRe, minImNew, maxReNew, this.exactMaxIm, this.nMax,
+                this.innerColor, this.colorGradient).copyOptions(this).reuse(this);
+    }
 
-        double maxReNew = this.minRe + Math.abs(this.maxRe - this.minRe) * widthFactor;
-        double minImNew = this.maxIm - Math.abs(this.maxIm - this.minIm) * heightFactor;
+    /**
+     * This method returns a new Mandelbrot object for one tile of the area. The
+     * area is divided into 2^level x 2^level tiles, x is counted from the left and
+     * y from the top. The tiles are only square if the area is.
+     * 
+     * @param size edge length of the tile image in pixels
+     */
+    public Mandelbrot getTile(int level, int x, int y, int size) {
+        BigDecimal scale = BigDecimal.ONE.divide(BigDecimal.valueOf(2).pow(level));
+        BigDecimal lengthRe = this.exactMaxRe.subtract(this.exactMinRe).multiply(scale);
+        BigDecimal lengthIm = this.exactMaxIm.subtract(this.exactMinIm).multiply(scale);
+        BigDecimal minRe = this.exactMinRe.add(lengthRe.multiply(BigDecimal.valueOf(x)));
+        BigDecimal maxIm = this.exactMaxIm.subtract(lengthIm.multiply(BigDecimal.valueOf(y)));
+        return new Mandelbrot(size, size, minRe, maxIm.subtract(lengthIm), minRe.add(lengthRe), maxIm, this.nMax,
+                this.innerColor, this.colorGradient).copyOptions(this);
+    }
 
-        return new Mandelbrot(fullWidth, fullHeight, this.minRe, minImNew, maxReNew, this.maxIm, this.nMax,
-                this.innerColor, this.colorGradient);
+    /**
+     * This method returns a new Mandelbrot object with a higher maximum number of
+     * iterations. If this object has been built, the new one takes over its
+     * iteration data and only iterates the pixels that have not diverged yet. If
+     * keepOrbitState was set for the build, these pixels continue where they
+     * stopped instead of starting over.
+     * 
+     * @param nMax maximum number of iterations of the new object
+     */
+    public Mandelbrot deepen(int nMax) {
+        if (nMax < this.nMax)
+            throw new IllegalArgumentException("nMax must not be smaller than " + this.nMax);
+        return new Mandelbrot(this.fullWidth, this.fullHeight, this.exactMinRe, this.exactMinIm, this.exactMaxRe,
+                this.exactMaxIm, nMax, this.innerColor, this.colorGradient).copyOptions(this).reuse(this);
     }
 
     /**
@@ -396,6 +970,14 @@ public class Mandelbrot {
             return false;
         if (this.maxIm != mandelbrot.maxIm)
             return false;
+        if (this.exactMinRe.compareTo(mandelbrot.exactMinRe) != 0)
+            return false;
+        if (this.exactMinIm.compareTo(mandelbrot.exactMinIm) != 0)
+            return false;
+        if (this.exactMaxRe.compareTo(mandelbrot.exactMaxRe) != 0)
+            return false;
+        if (this.exactMaxIm.compareTo(mandelbrot.exactMaxIm) != 0)
+            return false;
         if (this.nMax != mandelbrot.nMax)
             return false;
         if (this.innerColor != mandelbrot.innerColor)
@@ -406,66 +988,50 @@ public class Mandelbrot {
     }
 
     /**
-     * This Methods creates a color palette based on a color for the inside of the
-     * set and a color gradient characterized by multiple colors
-     * 
-     * @param color    color for the inside of the set
-     * @param gradient color gradient for the outside of the set
-     * @param nMax     maximum number of iterations
-     * @return
+     * This method computes a hash code that is consistent with equals().
+     */
+    @Override
+    public int hashCode() {
+        int hash = this.fullWidth;
+        hash = 31 * hash + this.fullHeight;
+        hash = 31 * hash + this.exactMinRe.stripTrailingZeros().hashCode();
+        hash = 31 * hash + this.exactMinIm.stripTrailingZeros().hashCode();
+        hash = 31 * hash + this.exactMaxRe.stripTrailingZeros().hashCode();
+        hash = 31 * hash + this.exactMaxIm.stripTrailingZeros().hashCode();
+        hash = 31 * hash + this.nMax;
+        hash = 31 * hash + this.innerColor;
+        hash = 31 * hash + Arrays.hashCode(this.colorGradient);
+        return hash;
+    }
+
+    private void updateColorPalette() {
+        long start = System.nanoTime();
+        this.colorPalette = getColorPalette(this.innerColor, this.colorGradient, this.nMax);
+        this.paletteTime = System.nanoTime() - start;
+    }
+
+    /**
+     * This method returns the color palette of the last call if the colors and
+     * nMax have not changed, so a sequence of objects with the same colors shares
+     * one palette.
      */
-    private int[] createColorPalette(int color, int[] gradient, int nMax) throws IllegalArgumentException {
-        if (gradient.length == 0)
-            new IllegalArgumentException("There must be at least one color in the color gradient");
-
-        if (nMax == 0)
-            return new int[] { color };
-
-        if (gradient.length == 1) {
-            int[] palette = new int[nMax + 1];
-            for (int i = 0; i < nMax; i++)
-                palette[i] = gradient[0];
-            palette[nMax] = color;
-            return palette;
-        }
-
-        // reverse the gradient
-        int[] gradientRev = new int[gradient.length];
-        int c = 0;
-        for (int i = gradient.length - 1; i >= 0; i--)
-            gradientRev[c++] = gradient[i];
-
-        // build the color palette
-        float[] fractions = new float[gradientRev.length];
-        for (int i = 0; i < fractions.length; i++)
-            fractions[i] = ((float) 1 / gradientRev.length) * i;
-        Color[] colorsGradient = new Color[gradientRev.length];
-        for (int i = 0; i < colorsGradient.length; i++)
-            colorsGradient[i] = new Color(gradientRev[i]);
-        LinearGradientPaint p = new LinearGradientPaint(0, 0, nMax, 1, fractions, colorsGradient);
-        BufferedImage bi = new BufferedImage(nMax, 1, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = bi.createGraphics();
-        g2d.setPaint(p);
-        g2d.fillRect(0, 0, nMax, 1);
-        g2d.dispose();
-
-        int[] palette = new int[nMax + 1];
-        for (int i = 0; i < bi.getWidth(); i++)
-            palette[i] = bi.getRGB(i, 0);
-        palette[nMax] = color;
-        return palette;
+    private static synchronized ColorPalette getColorPalette(int color, int[] gradient, int nMax) {
+        if (sharedPalette == null || !sharedPalette.matches(color, gradient, nMax))
+            sharedPalette = new ColorPalette(color, gradient, nMax);
+        return sharedPalette;
     }
 
     /**
      * This method exports the Mandelbrot object into an image. It can only be
-     * called when finished building.
+     * called when finished building. The format is chosen by the extension of the
+     * path (see getImageFormat()).
      * 
      * @param path export path
      */
     public void exportImage(String path) throws OutOfMemoryError {
         try {
             try {
-                ImageIO.write(this.getFullImage(), "jpg", new File(path));
+                this.writeImage(path, this.getFullImage());
             } catch (IOException var5) {
                 var5.printStackTrace();
             }
@@ -477,7 +1043,7 @@ public class Mandelbrot {
     public void saveAreaAsPicture(String path) throws OutOfMemoryError {
         try {
             try {
-                ImageIO.write(this.getAreaImage(), "jpg", new File(path));
+                this.writeImage(path, this.getAreaImage());
             } catch (IOException var5) {
                 var5.printStackTrace();
             }
@@ -486,182 +1052,1548 @@ public class Mandelbrot {
         }
     }
 
-    public void build(final Runnable onFinish) {
-        this.build((percentage) -> {
-            // empty
-        }, onFinish);
+    /**
+     * @return the image format of the extension of a path: "png", "ppm" or a
+     *         format ImageIO can write, otherwise "jpg"
+     */
+    static String getImageFormat(String path) {
+        String name = new File(path).getName();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+        if (extension.equals("jpeg"))
+            return "jpg";
+        if (extension.equals("png") || extension.equals("ppm"))
+            return extension;
+        if (!name.contains(".") || !ImageIO.getImageWritersBySuffix(extension).hasNext())
+            return "jpg";
+        return extension;
     }
 
-    public void build(final Executable<Integer> onProgress, final Runnable onFinish) throws OutOfMemoryError {
+    /**
+     * This method encodes the full image into a stream, for example the response
+     * of a request. It can only be called when finished building.
+     * 
+     * @param format image format: "png", "ppm" or a format ImageIO can write
+     */
+    public void exportImage(OutputStream out, String format) throws IOException {
+        this.writeImage(out, format, null, this.getFullImage());
+    }
 
-        // make sure we are on the Swing UI Thread
-        if (!SwingUtilities.isEventDispatchThread()) {
-            SwingUtilities.invokeLater(() -> build(onProgress, onFinish));
-            return;
+    /**
+     * This method writes an image in the format of the extension of the path. PNG
+     * files are compressed in parallel on the render pool.
+     */
+    private void writeImage(String path, BufferedImage image) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(path))) {
+            this.writeImage(out, getImageFormat(path), path, image);
         }
+    }
 
-        if (isBuilding) {
-            return;
+    private void writeImage(OutputStream out, String format, String path, BufferedImage image) throws IOException {
+        RenderMetrics.EncodeEvent event = new RenderMetrics.EncodeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (format.equals("png")) {
+            int filter = PngWriter.parseFilter(this.pngFilter);
+            PngWriter.encode(out, rgb, width, height, this.pngCompression, filter, DEFAULT_POOL);
+        } else if (format.equals("ppm")) {
+            out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+            byte[] row = new byte[3 * width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0, k = 0; x < width; x++) {
+                    int color = rgb[y * width + x];
+                    row[k++] = (byte) (color >> 16);
+                    row[k++] = (byte) (color >> 8);
+                    row[k++] = (byte) color;
+                }
+                out.write(row);
+            }
+        } else if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No writer for the image format '" + format + "'");
         }
-
-        if (isBuilt) {
-            onProgress.run(100);
-            onFinish.run();
-            return;
+        out.flush();
+        this.encodeTime = System.nanoTime() - start;
+        this.encodedPixels = (long) width * height;
+        this.encodedFormat = format;
+        if (this.metrics != null)
+            this.metrics.addEncodeTime(this.encodeTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = format;
+            event.path = path;
+            event.bytes = 3L * this.encodedPixels;
+            event.commit();
         }
+    }
 
-        this.startTime = System.currentTimeMillis();
-        try {
-            this.iterationData = new int[this.areaWidth * this.areaHeight];
-            this.workerThreads = new SwingWorker[this.NUMTHREADS];
-        } catch (OutOfMemoryError err) {
-            throw new OutOfMemoryError("Not enough allocated storage");
+    /**
+     * This method renders the image in horizontal strips and writes it to a PNG
+     * file while it is being computed. While one strip is encoded, the next one
+     * is computed on the render pool, so at most two strips are kept in memory.
+     * The iteration data of the whole area is never stored, therefore the object
+     * is not built afterwards.
+     * 
+     * @param path       export path of the PNG file
+     * @param onProgress called with the percentage completed
+     */
+    public void exportImageStreaming(String path, final Executable<Integer> onProgress) throws IOException {
+        synchronized (this) {
+            if (this.isBuilding)
+                throw new IllegalStateException("The Mandelbrot object is already being built");
+            this.isBuilding = true;
         }
+        this.startTime = System.currentTimeMillis();
         this.percentageCompleted = 0;
-        this.rowsCompleted = 0;
-        this.isBuilding = true;
-
-        for (int i = 0; i < this.NUMTHREADS; i++) {
-            final int k = i;
-
-            this.workerThreads[i] = new SwingWorker<int[], Integer>() {
-                int xBegin;
-                int xEnd;
-                int xRange;
-                int yBegin;
-                int yEnd;
-                int yRange;
-
-                protected int[] doInBackground() {
-                    try {
-                        this.xBegin = 0;
-                        this.xEnd = areaWidth;
-                        this.xRange = this.xEnd - this.xBegin;
-                        this.yBegin = k * (areaHeight / NUMTHREADS);
-                        this.yEnd = k * (areaHeight / NUMTHREADS) + areaHeight / NUMTHREADS;
-
-                        if (k == NUMTHREADS - 1)
-                            this.yEnd = areaHeight;
-
-                        this.yRange = this.yEnd - this.yBegin;
-
-                        int[] part = new int[this.xRange * this.yRange];
-
-                        for (int row = 0; row < this.yRange; ++row) {
-                            for (int col = 0; col < this.xRange; ++col) {
-                                if (!isBuilding)
-                                    return null;
-                                double px = (double) (this.xBegin + col);
-                                double py = (double) (this.yBegin + row);
-                                double zOriginRe = minRe;
-                                double zOriginIm = maxIm;
-                                double s = Math.abs(maxRe - minRe) / (double) areaWidth;
-                                double cRe = zOriginRe + s * px;
-                                double cIm = zOriginIm - s * py;
-                                part[row * this.xRange + col] = iterate(cRe, cIm);
-                            }
-
-                            this.publish(new Integer[] { row });
-                        }
-
-                        return part;
-                    } catch (Throwable t) {
-                        System.out.println(t);
-                        throw new OutOfMemoryError("Not enough allocated storage");
-                    }
-                }
-
-                protected void process(List<Integer> rows) {
-                    if (isBuilding) {
-                        rowsCompleted = rowsCompleted + rows.size();
-                        int lastPercentage = percentageCompleted;
-                        percentageCompleted = (int) Math.round(rowsCompleted * 100.0D / (double) areaHeight);
-                        if (lastPercentage != percentageCompleted) {
-                            onProgress.run(percentageCompleted);
-                        }
-                    }
-                }
-
-                public void done() {
-                    try {
-                        int[] part = (int[]) this.get();
-                        if (part != null) {
-                            int normalPartLength = areaWidth
-                                    * ((k * (areaHeight / NUMTHREADS) + areaHeight / NUMTHREADS)
-                                            - (k * (areaHeight / NUMTHREADS)));
-                            System.arraycopy(part, 0, iterationData, normalPartLength * k, part.length);
-                        }
-                    } catch (ExecutionException | InterruptedException var3) {
-                        String message = var3.getCause().getMessage();
-                        if (message.equals("Java heap space")) {
-                            throw new OutOfMemoryError("Not enough allocated storage");
-                        }
-                    }
-
-                    ++finishedThreads;
-                    if (finishedThreads == workerThreads.length) {
-                        finishedThreads = 0;
-                        isBuilt = true;
-                        isBuilding = false;
-                        onProgress.run(100);
-                        onFinish.run();
-                    }
-
-                }
-
-            };
-            this.workerThreads[i].execute();
+        this.pixelsCompleted.set(0);
+        this.pixelsTotal = (long) this.areaWidth * this.areaHeight;
+        this.hasBeenAborted = false;
+        this.renderFuture = null;
+        this.metrics = this.collectMetrics ? this.createMetrics() : null;
+        RenderMetrics.BuildEvent event = new RenderMetrics.BuildEvent();
+        event.begin();
+
+        int rows = Math.max(1, this.stripHeight);
+        int filter = PngWriter.parseFilter(this.pngFilter);
+        try (PngWriter png = new PngWriter(new BufferedOutputStream(new FileOutputStream(path)), this.fullWidth,
+                this.fullHeight, this.pngCompression, filter)) {
+            this.selectPrecision();
+            this.prepareKernel();
+            CompletableFuture<int[]> next = this.renderStrip(0, rows, onProgress);
+            for (int y = 0; y < this.fullHeight; y += rows) {
+                int[] strip = next.join();
+                if (y + rows < this.fullHeight)
+                    next = this.renderStrip(y + rows, rows, onProgress);
+                if (this.hasBeenAborted)
+                    throw new CancellationException("The build has been aborted");
+                long start = System.nanoTime();
+                png.writeRows(strip, 0, Math.min(rows, this.fullHeight - y));
+                if (this.metrics != null)
+                    this.metrics.addEncodeTime(System.nanoTime() - start);
+            }
+            this.finishBuild(event);
+        } finally {
+            this.isBuilding = false;
         }
-
+        onProgress.run(100);
     }
 
-    public void abort() {
-        this.isBuilding = false;
-        if (this.workerThreads == null)
-            return;
-        for (int i = 0; i < this.NUMTHREADS; i++) {
-            if (this.workerThreads[i] != null && !this.workerThreads[i].isDone()) {
-                this.hasBeenAborted = true;
-                try {
-                    this.workerThreads[i].cancel(true);
-                } catch (Exception var9) {
-                }
+    /**
+     * This method computes and colors the rows yBegin to yBegin + rows of the
+     * image (not only of the area) on the render pool.
+     */
+    private CompletableFuture<int[]> renderStrip(int yBegin, int rows, Executable<Integer> onProgress) {
+        return CompletableFuture.supplyAsync(() -> {
+            int yEnd = Math.min(yBegin + rows, this.fullHeight);
+            int[] rgb = new int[this.fullWidth * (yEnd - yBegin)];
+
+            int areaBegin = Math.max(yBegin, this.offsetY) - this.offsetY;
+            int areaEnd = Math.max(areaBegin, Math.min(yEnd, this.offsetY + this.areaHeight) - this.offsetY);
+            int[] iterations = new int[this.areaWidth * (areaEnd - areaBegin)];
+            new TileTask(iterations, areaBegin, 0, areaBegin, this.areaWidth, areaEnd, onProgress).invoke();
+            long start = System.nanoTime();
+            this.composeRows(rgb, yBegin, iterations, areaBegin, yBegin, yEnd);
+            if (this.metrics != null) {
+                this.metrics.addColoringTime(System.nanoTime() - start);
+                this.metrics.addToHistogram(iterations, 0, iterations.length);
             }
-        }
+            return rgb;
+        }, DEFAULT_POOL);
     }
 
-    private long countTotalIterations() {
-        long count = 0L;
-
-        for (int i = 0; i < this.iterationData.length; ++i) {
-            count += (long) this.iterationData[i];
+    /**
+     * This method computes the iteration data on worker processes (see
+     * DistributedRenderer) instead of the render pool. Like streaming, it
+     * neither applies smooth coloring nor supersampling.
+     * 
+     * @param workers    addresses of running workers (see RenderWorker)
+     * @param onProgress called with the percentage completed
+     * @return the coordinator, which tells how the strips have been computed
+     */
+    public DistributedRenderer renderDistributed(List<InetSocketAddress> workers,
+            final Executable<Integer> onProgress) throws InterruptedException {
+        synchronized (this) {
+            if (this.isBuilding)
+                throw new IllegalStateException("The object is being built");
+            this.isBuilding = true;
         }
+        this.startTime = System.currentTimeMillis();
+        this.hasBeenAborted = false;
+        this.metrics = this.collectMetrics ? this.createMetrics() : null;
+        this.iterationSum.reset();
+        this.mirrorBegin = 0;
+        this.mirrorEnd = 0;
+        this.selectPrecision();
+        DistributedRenderer renderer = new DistributedRenderer(this, this.getYAML(), workers, this.stripHeight);
+        RenderMetrics.BuildEvent event = new RenderMetrics.BuildEvent();
+        event.begin();
+        try {
+            this.iterationData = renderer.run(onProgress);
+            this.iterationSum.add(renderer.getTotalIterations());
+        } finally {
+            this.isBuilding = false;
+        }
+        this.smoothData = null;
+        this.edgePixels = null;
+        this.edgeColors = null;
+        this.isBuilt = true;
+        this.finishBuild(event);
+        onProgress.run(100);
+        return renderer;
+    }
 
-        return count;
+    /**
+     * This method prepares the object to compute single strips of rows with
+     * computeRows(), for example on a worker: the precision is chosen and the
+     * reference orbit of a deep zoom is computed once for all strips.
+     */
+    void prepareRows() {
+        this.isBuilding = true;
+        this.selectPrecision();
+        this.prepareKernel();
     }
 
-    private int iterate(double cRe, double cIm) {
-        double zRe = 0.0D;
-        double zIm = 0.0D;
-        for (int n = 0; n < this.nMax; ++n) {
-            double sqrZRe = zRe * zRe - zIm * zIm;
-            double sqrZIm = zRe * zIm + zIm * zRe;
+    /**
+     * @return the iterations of the rows yBegin to yEnd - 1 of the area, computed
+     *         on the render pool
+     */
+    int[] computeRows(int yBegin, int yEnd) {
+        int[] iterations = new int[this.areaWidth * (yEnd - yBegin)];
+        DEFAULT_POOL.invoke(new TileTask(iterations, yBegin, 0, yBegin, this.areaWidth, yEnd, null));
+        return iterations;
+    }
+
+    public void build(final Runnable onFinish) {
+        this.build((percentage) -> {
+            // empty
+        }, onFinish);
+    }
+
+    /**
+     * This method builds the Mandelbrot object on the default render pool. Both
+     * callbacks are run on one of the rendering threads.
+     */
+    public void build(final Executable<Integer> onProgress, final Runnable onFinish) throws OutOfMemoryError {
+        this.render(DEFAULT_POOL, onProgress).whenComplete((data, err) -> {
+            if (err == null)
+                onFinish.run();
+            else if (!(err instanceof CancellationException))
+                System.out.println(err.getCause() != null ? err.getCause() : err);
+        });
+    }
+
+    public CompletableFuture<int[]> render() {
+        return this.render(DEFAULT_POOL);
+    }
+
+    public CompletableFuture<int[]> render(Executor executor) {
+        return this.render(executor, (percentage) -> {
+            // empty
+        });
+    }
+
+    /**
+     * This method computes the iteration data on the given executor. If the
+     * executor is a ForkJoinPool the area is split recursively so that idle
+     * threads can steal work (or subdivided into rectangles if useSubdivision is
+     * set), otherwise every tile is submitted as a task of its own. No Swing or
+     * AWT classes are involved.
+     * 
+     * @param executor   executor that runs the computation
+     * @param onProgress called with the percentage completed (on a rendering
+     *                   thread)
+     * @return a future that completes with the iteration data
+     */
+    public CompletableFuture<int[]> render(Executor executor, final Executable<Integer> onProgress)
+            throws OutOfMemoryError {
+        return this.render(executor, onProgress, null);
+    }
+
+    /**
+     * Same as above, but if useProgressiveRendering is set the area is built at
+     * 1/16 and 1/4 of its pixels first. Every preview is a built Mandelbrot object
+     * of its own that is handed to onPreview.
+     * 
+     * @param onPreview called with every preview (on a rendering thread), may be
+     *                  null
+     */
+    public synchronized CompletableFuture<int[]> render(Executor executor, final Executable<Integer> onProgress,
+            final Executable<Mandelbrot> onPreview) throws OutOfMemoryError {
+        if (this.isBuilding)
+            return this.renderFuture;
+
+        if (this.isBuilt) {
+            onProgress.run(100);
+            return CompletableFuture.completedFuture(this.iterationData);
+        }
+
+        this.startTime = System.currentTimeMillis();
+        try {
+            this.iterationData = new int[this.areaWidth * this.areaHeight];
+            this.smoothData = this.useSmoothColoring ? new float[this.iterationData.length] : null;
+        } catch (OutOfMemoryError err) {
+            throw new OutOfMemoryError("Not enough allocated storage");
+        }
+        this.percentageCompleted = 0;
+        this.pixelsCompleted.set(0);
+        this.pixelsTotal = this.iterationData.length;
+        this.hasBeenAborted = false;
+        this.subdivisionMismatches = -1;
+        this.reusedPixels = -1;
+        this.iterationSum.reset();
+        this.mirrorBegin = 0;
+        this.mirrorEnd = 0;
+        this.edgePixels = null;
+        this.edgeColors = null;
+        this.orbitState = this.keepOrbitState ? new OrbitState() : null;
+        this.metrics = this.collectMetrics ? this.createMetrics() : null;
+        this.selectPrecision();
+        final RenderMetrics.BuildEvent event = new RenderMetrics.BuildEvent();
+        event.begin();
+        this.isBuilding = true;
+
+        CompletableFuture<Void> computation = CompletableFuture.supplyAsync(this::loadFromCache, executor)
+                .thenCompose((cached) -> cached ? CompletableFuture.completedFuture((Void) null)
+                        : CompletableFuture.runAsync(this::prepareKernel, executor)
+                                .thenCompose((v) -> this.useProgressiveRendering && this.seed == null
+                                        ? this.computePreviews(executor, onPreview)
+                                        : CompletableFuture.completedFuture((Void) null))
+                                .thenCompose((v) -> this.computeArea(executor, onProgress))
+                                .thenRun(this::storeInCache))
+                .thenCompose((v) -> this.supersample(executor));
+
+        this.renderFuture = computation.handle((v, err) -> {
+            synchronized (this) {
+                if (this.hasBeenAborted)
+                    throw new CancellationException("The build has been aborted");
+                this.isBuilding = false;
+                if (err != null) {
+                    Throwable cause = err instanceof CompletionException ? err.getCause() : err;
+                    if (cause instanceof OutOfMemoryError)
+                        throw new CompletionException(new OutOfMemoryError("Not enough allocated storage"));
+                    throw new CompletionException(cause);
+                }
+                this.isBuilt = true;
+                this.seed = null;
+            }
+            if (this.metrics != null)
+                this.metrics.addToHistogram(this.iterationData, 0, this.iterationData.length);
+            this.finishBuild(event);
+            onProgress.run(100);
+            return this.iterationData;
+        });
+        return this.renderFuture;
+    }
+
+    private RenderMetrics createMetrics() {
+        return new RenderMetrics(this.fullWidth, this.fullHeight, this.areaWidth, this.areaHeight, this.nMax,
+                this.paletteTime);
+    }
+
+    private void finishBuild(RenderMetrics.BuildEvent event) {
+        if (this.metrics != null)
+            this.metrics.finishBuild();
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = this.areaWidth;
+            event.height = this.areaHeight;
+            event.nMax = this.nMax;
+            event.reusedPixels = this.reusedPixels;
+            event.commit();
+        }
+    }
+
+    /**
+     * This method builds the area at 1/16 and then at 1/4 of its pixels. Every
+     * preview takes over the pixels of the previous one and is handed to
+     * onPreview as soon as it is built. The last preview becomes the seed of this
+     * object, so the full build only computes the pixels that are missing.
+     */
+    private CompletableFuture<Void> computePreviews(Executor executor, final Executable<Mandelbrot> onPreview) {
+        CompletableFuture<Mandelbrot> previews = CompletableFuture.completedFuture(null);
+        for (int step : PREVIEW_STEPS) {
+            previews = previews.thenCompose((previous) -> {
+                Mandelbrot preview = this.scaleDown(step);
+                if (previous != null)
+                    preview.reuse(previous);
+                synchronized (this) {
+                    if (!this.isBuilding)
+                        throw new CancellationException("The build has been aborted");
+                    this.currentPreview = preview;
+                }
+                return preview.render(executor).thenApply((data) -> {
+                    if (onPreview != null)
+                        onPreview.run(preview);
+                    return preview;
+                });
+            });
+        }
+        return previews.thenAccept((last) -> {
+            this.currentPreview = null;
+            this.reuse(last);
+        });
+    }
+
+    /**
+     * @return a Mandelbrot object without background whose pixels are every
+     *         step-th pixel of the area of this object in both directions
+     */
+    private Mandelbrot scaleDown(int step) {
+        int width = (this.areaWidth + step - 1) / step;
+        int height = (this.areaHeight + step - 1) / step;
+        BigDecimal spacing = this.exactMaxRe.subtract(this.exactMinRe).multiply(BigDecimal.valueOf(step))
+                .divide(BigDecimal.valueOf(this.areaWidth), this.getMathContext());
+        Mandelbrot preview = new Mandelbrot(width, height, this.exactMinRe,
+                this.exactMaxIm.subtract(spacing.multiply(BigDecimal.valueOf(height))),
+                this.exactMinRe.add(spacing.multiply(BigDecimal.valueOf(width))), this.exactMaxIm, this.nMax,
+                this.innerColor, this.colorGradient).copyOptions(this);
+        // the size of the area must not be rounded to a pixel more
+        preview.areaWidth = width;
+        preview.areaHeight = height;
+        preview.offsetX = 0;
+        preview.offsetY = 0;
+        preview.useProgressiveRendering = false;
+        preview.precision = this.getPrecision().toString(); // the seed must have the precision of the build
+        preview.keepOrbitState = false;
+        preview.cacheDirectory = null;
+        preview.supersampling = 1;
+        return preview;
+    }
+
+    /**
+     * This method computes the iteration data of the whole area on the given
+     * executor.
+     */
+    private CompletableFuture<Void> computeArea(Executor executor, final Executable<Integer> onProgress) {
+        CompletableFuture<Void> fromSeed = this.seed != null ? this.computeFromSeed(executor, onProgress) : null;
+        if (fromSeed != null) {
+            return fromSeed;
+        } else if (executor instanceof ForkJoinPool && this.useSubdivision && this.smoothData == null) {
+            return CompletableFuture.runAsync(() -> this.buildBySubdivision(onProgress), executor);
+        }
+        this.selectMirror();
+        int yBegin = this.mirrorBegin == 0 ? this.mirrorEnd : 0;
+        int yEnd = this.mirrorBegin == 0 ? this.areaHeight : this.mirrorBegin;
+        this.pixelsTotal = Math.max(1, (yEnd - yBegin) * this.areaWidth);
+        if (executor instanceof ForkJoinPool) {
+            TileTask root = new TileTask(this.iterationData, 0, yBegin, this.areaWidth, yEnd, onProgress);
+            return CompletableFuture.runAsync(root::invoke, executor).thenRun(this::mirrorRows);
+        } else {
+            int size = Math.max(1, this.tileSize);
+            List<CompletableFuture<Void>> tiles = new ArrayList<>();
+            for (int y = yBegin; y < yEnd; y += size) {
+                for (int x = 0; x < this.areaWidth; x += size) {
+                    final int xBegin = x;
+                    final int tileBegin = y;
+                    final int xEnd = Math.min(x + size, this.areaWidth);
+                    final int tileEnd = Math.min(y + size, yEnd);
+                    tiles.add(CompletableFuture.runAsync(() -> {
+                        if (!isBuilding)
+                            return;
+                        computeTile(iterationData, xBegin, tileBegin, xEnd, tileEnd);
+                        reportProgress((xEnd - xBegin) * (tileEnd - tileBegin), onProgress);
+                    }, executor));
+                }
+            }
+            return CompletableFuture.allOf(tiles.toArray(new CompletableFuture<?>[0])).thenRun(this::mirrorRows);
+        }
+    }
+
+    /**
+     * This method finds the position of the real axis if it lies on a row or
+     * between two rows (or at a quarter of a row, like in the previews of an
+     * area whose axis lies between two rows). The rows below the axis are then
+     * computed at the exact negations of the imaginary parts of the rows they
+     * mirror (see getIm()), so every pixel below the axis gets the same result
+     * as its mirror image and mirroring the rows does not change the image. Deep
+     * zooms are not mirrored, because their pixels are relative to a reference
+     * orbit that need not lie on the axis.
+     */
+    private void selectAxis() {
+        this.mirrorSum = Double.NaN;
+        if (this.tier == Precision.PERTURBATION || this.exactMaxIm.signum() <= 0 || this.exactMinIm.signum() >= 0)
+            return;
+        // position of the real axis in rows, mirrored rows add up to twice of it
+        double axis = this.exactMaxIm.multiply(BigDecimal.valueOf(2L * this.areaWidth))
+                .divide(this.exactMaxRe.subtract(this.exactMinRe), this.getMathContext()).doubleValue();
+        double sum = (double) Math.round(axis * MIRROR_FRACTIONS) / MIRROR_FRACTIONS;
+        if (Math.abs(axis - sum) < MIRROR_ALIGNMENT)
+            this.mirrorSum = sum;
+    }
+
+    /**
+     * @return the imaginary part of the row y, which is the exact negation of the
+     *         imaginary part of its mirror image if it lies below the real axis
+     *         (see selectAxis())
+     */
+    private double getIm(double s, double y) {
+        if (y > this.mirrorSum / 2.0D)
+            return -(this.maxIm - s * (this.mirrorSum - y));
+        return this.maxIm - s * y;
+    }
+
+    /**
+     * This method finds the rows that do not have to be computed because the set
+     * is symmetric to the real axis: if the rows lie exactly on the mirror images
+     * of other rows (see selectAxis()), the shorter side of the axis is mirrored
+     * from the longer one. Only the longer side (including the row on the axis)
+     * is computed. Builds that keep the orbit state of their pixels are not
+     * mirrored.
+     */
+    private void selectMirror() {
+        this.mirrorBegin = 0;
+        this.mirrorEnd = 0;
+        double sum = this.mirrorSum;
+        if (!this.useSymmetry || this.referenceOrbit != null || this.orbitState != null || sum != Math.rint(sum)
+                || sum <= 0 || sum >= 2L * this.areaHeight - 2L)
+            return;
+        if (sum >= this.areaHeight - 1) {
+            // the upper side is the longer one
+            this.mirrorBegin = (int) sum / 2 + 1;
+            this.mirrorEnd = this.areaHeight;
+        } else {
+            this.mirrorEnd = ((int) sum + 1) / 2;
+        }
+    }
+
+    /**
+     * This method copies the computed rows into the rows that are their mirror
+     * images (see selectMirror()).
+     */
+    private void mirrorRows() {
+        if (!this.isBuilding)
+            return;
+        long iterations = 0;
+        for (int py = this.mirrorBegin; py < this.mirrorEnd; py++) {
+            int from = ((int) this.mirrorSum - py) * this.areaWidth;
+            System.arraycopy(this.iterationData, from, this.iterationData, py * this.areaWidth, this.areaWidth);
+            if (this.smoothData != null)
+                System.arraycopy(this.smoothData, from, this.smoothData, py * this.areaWidth, this.areaWidth);
+            for (int i = from; i < from + this.areaWidth; i++)
+                iterations += this.iterationData[i];
+        }
+        this.iterationSum.add(iterations);
+    }
+
+    /**
+     * This method anti-aliases the edges of the image. A pixel is an edge if one
+     * channel of its color differs from the color of one of its four neighbors
+     * by more than supersamplingThreshold. Only these pixels are sampled again,
+     * at one jittered point in every cell of a grid over the pixel, and get the
+     * average color of all samples. The rows are handled in bands of tileSize
+     * rows on the executor.
+     */
+    private CompletableFuture<Void> supersample(Executor executor) {
+        if (this.supersampling <= 1 || !this.isBuilding)
+            return CompletableFuture.completedFuture(null);
+        if (this.isDeepZoom() && this.referenceOrbit == null)
+            this.prepareKernel(); // the iteration data has been loaded from the cache
+        int size = Math.max(1, this.tileSize);
+        List<Edges> bands = new ArrayList<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int y = 0; y < this.areaHeight; y += size) {
+            final int yBegin = y;
+            final int yEnd = Math.min(y + size, this.areaHeight);
+            final Edges edges = new Edges();
+            bands.add(edges);
+            tasks.add(CompletableFuture.runAsync(() -> this.supersampleRows(yBegin, yEnd, edges), executor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            int count = 0;
+            for (Edges edges : bands)
+                count += edges.size;
+            int[] pixels = new int[count];
+            int[] colors = new int[count];
+            int offset = 0;
+            for (Edges edges : bands) {
+                System.arraycopy(edges.index, 0, pixels, offset, edges.size);
+                System.arraycopy(edges.color, 0, colors, offset, edges.size);
+                offset += edges.size;
+            }
+            this.edgeColors = colors;
+            this.edgePixels = pixels;
+        });
+    }
+
+    private void supersampleRows(int yBegin, int yEnd, Edges edges) {
+        int grid = (int) Math.round(Math.sqrt(this.supersampling));
+        float[] fraction = this.smoothData != null ? new float[1] : null;
+        SplittableRandom random = new SplittableRandom(yBegin); // the same jitter in every build
+        for (int py = yBegin; py < yEnd; py++) {
+            if (!this.isBuilding)
+                return;
+            for (int px = 0; px < this.areaWidth; px++) {
+                int index = py * this.areaWidth + px;
+                int color = this.getPixelColor(index);
+                if ((px > 0 && differs(color, this.getPixelColor(index - 1), this.supersamplingThreshold))
+                        || (px < this.areaWidth - 1
+                                && differs(color, this.getPixelColor(index + 1), this.supersamplingThreshold))
+                        || (py > 0 && differs(color, this.getPixelColor(index - this.areaWidth),
+                                this.supersamplingThreshold))
+                        || (py < this.areaHeight - 1 && differs(color,
+                                this.getPixelColor(index + this.areaWidth), this.supersamplingThreshold)))
+                    edges.add(index, this.samplePixel(px, py, grid, random, fraction));
+            }
+        }
+    }
+
+    /**
+     * @return the color of a pixel of the iteration data
+     */
+    private int getPixelColor(int index) {
+        if (this.smoothData != null)
+            return this.colorPalette.getColor(this.iterationData[index], this.smoothData[index]);
+        return this.colorPalette.getColor(this.iterationData[index]);
+    }
+
+    private static boolean differs(int color, int other, int threshold) {
+        return Math.abs(((color >> 16) & 0xFF) - ((other >> 16) & 0xFF)) > threshold
+                || Math.abs(((color >> 8) & 0xFF) - ((other >> 8) & 0xFF)) > threshold
+                || Math.abs((color & 0xFF) - (other & 0xFF)) > threshold;
+    }
+
+    /**
+     * This method samples a pixel at one random point in every cell of a grid of
+     * grid x grid cells, which covers the pixel around its regular sample.
+     * 
+     * @param fraction holds the fractional part of the number of iterations of a
+     *                 sample if smooth coloring is used, otherwise null
+     * @return the average color of all samples
+     */
+    private int samplePixel(int px, int py, int grid, SplittableRandom random, float[] fraction) {
+        int red = 0, green = 0, blue = 0;
+        for (int sy = 0; sy < grid; sy++) {
+            for (int sx = 0; sx < grid; sx++) {
+                double x = (double) px - 0.5D + ((double) sx + random.nextDouble()) / (double) grid;
+                double y = (double) py - 0.5D + ((double) sy + random.nextDouble()) / (double) grid;
+                int n = this.iterateAt(x, y, null, fraction, 0);
+                int color = fraction != null ? this.colorPalette.getColor(n, fraction[0])
+                        : this.colorPalette.getColor(n);
+                red += (color >> 16) & 0xFF;
+                green += (color >> 8) & 0xFF;
+                blue += color & 0xFF;
+            }
+        }
+        int samples = grid * grid;
+        return 0xFF000000 | ((red + samples / 2) / samples << 16) | ((green + samples / 2) / samples << 8)
+                | ((blue + samples / 2) / samples);
+    }
+
+    /**
+     * The supersampled pixels of a band of rows
+     */
+    private static class Edges {
+        private int size = 0;
+        private int[] index = new int[16];
+        private int[] color = new int[16];
+
+        void add(int index, int color) {
+            if (this.size == this.index.length) {
+                this.index = Arrays.copyOf(this.index, 2 * this.size);
+                this.color = Arrays.copyOf(this.color, 2 * this.size);
+            }
+            this.index[this.size] = index;
+            this.color[this.size] = color;
+            this.size++;
+        }
+    }
+
+    /**
+     * This method takes over the iteration data of the object this one has been
+     * derived from for every pixel that lies exactly on a pixel of that object.
+     * Pixels that diverged keep their number of iterations and pixels that are
+     * known to be inside of the set get the new nMax. If nMax has been raised,
+     * pixels with a saved state are iterated further. All other pixels are
+     * computed from the beginning.
+     * 
+     * @return a future that completes when all remaining pixels are computed or
+     *         null if too few pixels could be taken over
+     */
+    private CompletableFuture<Void> computeFromSeed(Executor executor, final Executable<Integer> onProgress) {
+        Seed seed = this.seed;
+        if (seed.useInteriorCheck != this.useInteriorCheck || seed.usePeriodicityCheck != this.usePeriodicityCheck
+                || seed.periodicityTolerance != this.periodicityTolerance || seed.precision != this.tier
+                || (this.smoothData != null && seed.smooth == null))
+            return null;
+
+        // position and pixel size of this area in pixels of the seed
+        MathContext mc = this.getMathContext();
+        BigDecimal seedWidth = BigDecimal.valueOf(seed.width);
+        BigDecimal seedRange = seed.exactMaxRe.subtract(seed.exactMinRe);
+        double ratio = this.exactMaxRe.subtract(this.exactMinRe).multiply(seedWidth)
+                .divide(seedRange.multiply(BigDecimal.valueOf(this.areaWidth)), mc).doubleValue();
+        double originX = this.exactMinRe.subtract(seed.exactMinRe).multiply(seedWidth).divide(seedRange, mc)
+                .doubleValue();
+        double originY = seed.exactMaxIm.subtract(this.exactMaxIm).multiply(seedWidth).divide(seedRange, mc)
+                .doubleValue();
+        int[] mapX = mapToSeed(originX, ratio, this.areaWidth, seed.width);
+        int[] mapY = mapToSeed(originY, ratio, this.areaHeight, seed.height);
+
+        // pixels that still have to be computed are marked with -1
+        boolean deeper = this.nMax > seed.nMax;
+        int reused = 0;
+        long reusedIterations = 0;
+        for (int py = 0; py < this.areaHeight; py++) {
+            int offset = py * this.areaWidth;
+            for (int px = 0; px < this.areaWidth; px++) {
+                int value = -1;
+                if (mapX[px] >= 0 && mapY[py] >= 0) {
+                    int index = mapY[py] * seed.width + mapX[px];
+                    value = seed.data[index];
+                    if (value < seed.nMax || !deeper) {
+                        value = Math.min(value, this.nMax);
+                        if (this.smoothData != null && value < this.nMax)
+                            this.smoothData[offset + px] = seed.smooth[index];
+                        reused++;
+                        reusedIterations += value;
+                    } else {
+                        value = -1;
+                    }
+                }
+                this.iterationData[offset + px] = value;
+            }
+        }
+
+        OrbitState continued = new OrbitState();
+        if (deeper && seed.state != null) {
+            int[] inverseX = inverseMap(mapX, seed.width);
+            int[] inverseY = inverseMap(mapY, seed.height);
+            OrbitState saved = seed.state;
+            for (int i = 0; i < saved.size; i++) {
+                int px = inverseX[saved.index[i] % seed.width];
+                int py = inverseY[saved.index[i] / seed.width];
+                if (px < 0 || py < 0)
+                    continue;
+                int index = py * this.areaWidth + px;
+                if (!Double.isNaN(saved.re[i])) {
+                    continued.add(index, saved.re[i], saved.im[i]);
+                    this.iterationData[index] = 0;
+                    continue;
+                }
+                this.iterationData[index] = this.nMax;
+                reused++;
+                reusedIterations += this.nMax;
+                if (this.orbitState != null)
+                    this.orbitState.add(index, Double.NaN, Double.NaN);
+            }
+        }
+        if (continued.size == 0 && reused < MIN_REUSE_RATIO * (double) this.iterationData.length)
+            return null; // computing single pixels is slower than computing tiles
+        this.reusedPixels = reused;
+        this.iterationSum.add(reusedIterations);
+
+        int computedCount = 0;
+        int[] computed = new int[16];
+        for (int i = 0; i < this.iterationData.length; i++) {
+            if (this.iterationData[i] != -1)
+                continue;
+            if (computedCount == computed.length)
+                computed = Arrays.copyOf(computed, 2 * computedCount);
+            computed[computedCount++] = i;
+        }
+
+        final int[] computedPixels = computed;
+        final int nBegin = seed.nMax;
+        final int total = continued.size + computedCount;
+        this.pixelsTotal = Math.max(1, total);
+        int size = Math.max(1, this.tileSize);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int begin = 0; begin < total; begin += size * size) {
+            final int chunkBegin = begin;
+            final int chunkEnd = Math.min(begin + size * size, total);
+            chunks.add(CompletableFuture.runAsync(() -> {
+                OrbitState state = this.orbitState != null ? new OrbitState() : null;
+                long start = System.nanoTime();
+                long iterations = 0;
+                double s = this.rangeRe / (double) areaWidth;
+                for (int k = chunkBegin; k < chunkEnd; k++) {
+                    if (!isBuilding)
+                        return;
+                    int index = k < continued.size ? continued.index[k] : computedPixels[k - continued.size];
+                    int px = index % areaWidth;
+                    int py = index / areaWidth;
+                    if (k < continued.size && this.tier == Precision.DOUBLE) {
+                        this.iterationData[index] = this.continueIteration(minRe + s * (double) px,
+                                this.getIm(s, py), continued.re[k], continued.im[k], nBegin, state,
+                                this.smoothData, index);
+                    } else {
+                        this.iterationData[index] = this.computePixel(px, py, state, this.smoothData);
+                    }
+                    iterations += this.iterationData[index];
+                }
+                this.iterationSum.add(iterations);
+                if (state != null)
+                    this.orbitState.addAll(state);
+                if (this.metrics != null)
+                    this.metrics.addWork(chunkEnd - chunkBegin, System.nanoTime() - start, iterations);
+                reportProgress(chunkEnd - chunkBegin, onProgress);
+            }, executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * @param origin position of the first pixel in pixels of the seed
+     * @param ratio  size of a pixel in pixels of the seed
+     * @return for every pixel the pixel of the seed at exactly the same position
+     *         or -1 if there is none
+     */
+    private static int[] mapToSeed(double origin, double ratio, int length, int seedLength) {
+        int[] map = new int[length];
+        for (int i = 0; i < length; i++) {
+            double position = origin + ratio * (double) i;
+            long nearest = Math.round(position);
+            boolean aligned = Math.abs(position - (double) nearest) < SEED_ALIGNMENT;
+            map[i] = aligned && nearest >= 0 && nearest < seedLength ? (int) nearest : -1;
+        }
+        return map;
+    }
+
+    private static int[] inverseMap(int[] map, int seedLength) {
+        int[] inverse = new int[seedLength];
+        Arrays.fill(inverse, -1);
+        for (int i = 0; i < map.length; i++)
+            if (map[i] >= 0)
+                inverse[map[i]] = i;
+        return inverse;
+    }
+
+    /**
+     * This method loads the iteration data from the cache directory if it has
+     * been computed before.
+     * 
+     * @return true if the iteration data was found
+     */
+    private boolean loadFromCache() {
+        this.loadedFromCache = false;
+        if (this.cacheDirectory == null || this.smoothData != null)
+            return false; // the cache holds whole numbers of iterations only
+        IterationCache cache = new IterationCache(new File(this.cacheDirectory), this.cacheSize * 1024L * 1024L);
+        int[] data = cache.load(this.getCacheKey(), this.areaWidth, this.areaHeight, this.nMax);
+        if (data == null)
+            return false;
+        this.iterationData = data;
+        long iterations = 0;
+        for (int value : data)
+            iterations += value;
+        this.iterationSum.add(iterations);
+        this.loadedFromCache = true;
+        return true;
+    }
+
+    private void storeInCache() {
+        if (this.cacheDirectory == null || !this.isBuilding)
+            return;
+        IterationCache cache = new IterationCache(new File(this.cacheDirectory), this.cacheSize * 1024L * 1024L);
+        try {
+            cache.store(this.getCacheKey(), this.iterationData, this.areaWidth, this.areaHeight, this.nMax);
+        } catch (IOException e) {
+            // a cache that cannot be written must not fail the build
+        }
+    }
+
+    /**
+     * @return all parameters the iteration data depends on
+     */
+    private String getCacheKey() {
+        return this.exactMinRe.stripTrailingZeros() + ";" + this.exactMinIm.stripTrailingZeros() + ";"
+                + this.exactMaxRe.stripTrailingZeros() + ";" + this.exactMaxIm.stripTrailingZeros() + ";" + this.nMax
+                + ";" + this.areaWidth + "x" + this.areaHeight + ";" + this.useInteriorCheck + ";"
+                + this.usePeriodicityCheck + ";" + this.periodicityTolerance + ";" + this.useSubdivision + ";"
+                + this.tier + ";" + this.useSeriesApproximation;
+    }
+
+    /**
+     * This method computes the reference orbit if the area is a deep zoom.
+     */
+    private void prepareKernel() {
+        this.referenceOrbit = null;
+        if (!this.isDeepZoom())
+            return;
+        MathContext mc = this.getMathContext();
+        BigDecimal two = BigDecimal.valueOf(2);
+        BigDecimal centerRe = this.exactMinRe.add(this.exactMaxRe).divide(two, mc);
+        BigDecimal centerIm = this.exactMinIm.add(this.exactMaxIm).divide(two, mc);
+        ReferenceOrbit orbit = new ReferenceOrbit(centerRe, centerIm, this.nMax, mc);
+        if (this.useSeriesApproximation)
+            orbit.approximateSeries(Math.hypot(this.rangeRe, this.rangeIm) / 2.0D);
+        this.referenceOrbit = orbit;
+    }
+
+    /**
+     * The iteration data of a built Mandelbrot object together with the area and
+     * options it has been computed with
+     */
+    private static class Seed {
+        private int[] data;
+        private float[] smooth;
+        private OrbitState state;
+        private int nMax;
+        private int width;
+        private int height;
+        private BigDecimal exactMinRe;
+        private BigDecimal exactMaxRe;
+        private BigDecimal exactMaxIm;
+        private boolean useInteriorCheck;
+        private boolean usePeriodicityCheck;
+        private double periodicityTolerance;
+        private Precision precision;
+    }
+
+    /**
+     * The pixels whose sequence did not diverge within nMax iterations, together
+     * with the last element of the sequence. The element is NaN for pixels that
+     * are known to be inside of the set.
+     */
+    private static class OrbitState {
+        private int size = 0;
+        private int[] index = new int[16];
+        private double[] re = new double[16];
+        private double[] im = new double[16];
+
+        void add(int index, double re, double im) {
+            if (this.size == this.index.length) {
+                this.index = Arrays.copyOf(this.index, 2 * this.size);
+                this.re = Arrays.copyOf(this.re, 2 * this.size);
+                this.im = Arrays.copyOf(this.im, 2 * this.size);
+            }
+            this.index[this.size] = index;
+            this.re[this.size] = re;
+            this.im[this.size] = im;
+            this.size++;
+        }
+
+        synchronized void addAll(OrbitState other) {
+            for (int i = 0; i < other.size; i++)
+                this.add(other.index[i], other.re[i], other.im[i]);
+        }
+    }
+
+    /**
+     * A rectangular part of the area. Tasks that are larger than a tile are split
+     * in half along their longer side, so idle threads can steal the halves until
+     * every thread has work.
+     */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] target;
+        private final int targetY; // Row of the area that is stored at the beginning of the target
+        private final int xBegin;
+        private final int yBegin;
+        private final int xEnd;
+        private final int yEnd;
+        private final Executable<Integer> onProgress;
+
+        TileTask(int[] target, int xBegin, int yBegin, int xEnd, int yEnd, Executable<Integer> onProgress) {
+            this(target, 0, xBegin, yBegin, xEnd, yEnd, onProgress);
+        }
+
+        TileTask(int[] target, int targetY, int xBegin, int yBegin, int xEnd, int yEnd,
+                Executable<Integer> onProgress) {
+            this.target = target;
+            this.targetY = targetY;
+            this.xBegin = xBegin;
+            this.yBegin = yBegin;
+            this.xEnd = xEnd;
+            this.yEnd = yEnd;
+            this.onProgress = onProgress;
+        }
+
+        protected void compute() {
+            if (!isBuilding)
+                return;
+            int xRange = this.xEnd - this.xBegin;
+            int yRange = this.yEnd - this.yBegin;
+            int size = Math.max(1, tileSize);
+
+            if (xRange <= size && yRange <= size) {
+                computeTile(this.target, this.targetY, this.xBegin, this.yBegin, this.xEnd, this.yEnd);
+                reportProgress(xRange * yRange, this.onProgress);
+            } else if (xRange >= yRange) {
+                int xMid = this.xBegin + xRange / 2;
+                invokeAll(new TileTask(this.target, this.targetY, this.xBegin, this.yBegin, xMid, this.yEnd,
+                        this.onProgress),
+                        new TileTask(this.target, this.targetY, xMid, this.yBegin, this.xEnd, this.yEnd,
+                                this.onProgress));
+            } else {
+                int yMid = this.yBegin + yRange / 2;
+                invokeAll(new TileTask(this.target, this.targetY, this.xBegin, this.yBegin, this.xEnd, yMid,
+                        this.onProgress),
+                        new TileTask(this.target, this.targetY, this.xBegin, yMid, this.xEnd, this.yEnd,
+                                this.onProgress));
+            }
+        }
+    }
+
+    /**
+     * This method builds the area by rectangle subdivision (Mariani-Silver): only
+     * the border of a rectangle is computed. If all border pixels have the same
+     * number of iterations the inside is filled with it, otherwise the rectangle
+     * is split into four rectangles which are handled in parallel.
+     */
+    private void buildBySubdivision(Executable<Integer> onProgress) {
+        int xLast = this.areaWidth - 1;
+        int yLast = this.areaHeight - 1;
+        computeTile(this.iterationData, 0, 0, this.areaWidth, 1);
+        if (yLast > 0)
+            computeTile(this.iterationData, 0, yLast, this.areaWidth, this.areaHeight);
+        computeTile(this.iterationData, 0, 1, 1, yLast);
+        if (xLast > 0)
+            computeTile(this.iterationData, xLast, 1, this.areaWidth, yLast);
+        reportProgress(this.iterationData.length - Math.max(0, xLast - 1) * Math.max(0, yLast - 1), onProgress);
+
+        new SubdivisionTask(0, 0, xLast, yLast, onProgress).invoke();
+
+        if (this.verifySubdivision && this.isBuilding) {
+            int[] reference = new int[this.iterationData.length];
+            new TileTask(reference, 0, 0, this.areaWidth, this.areaHeight, null).invoke();
+            int mismatches = 0;
+            for (int i = 0; i < reference.length; i++)
+                if (reference[i] != this.iterationData[i])
+                    mismatches++;
+            this.subdivisionMismatches = mismatches;
+        }
+    }
+
+    /**
+     * A rectangle (including its border) whose border pixels are already computed
+     */
+    private class SubdivisionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int x0;
+        private final int y0;
+        private final int x1;
+        private final int y1;
+        private final Executable<Integer> onProgress;
+
+        SubdivisionTask(int x0, int y0, int x1, int y1, Executable<Integer> onProgress) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.onProgress = onProgress;
+        }
+
+        protected void compute() {
+            int innerWidth = this.x1 - this.x0 - 1;
+            int innerHeight = this.y1 - this.y0 - 1;
+            if (!isBuilding || innerWidth <= 0 || innerHeight <= 0)
+                return;
+
+            int value = this.getBorderValue();
+            if (value >= 0) {
+                for (int y = this.y0 + 1; y < this.y1; y++)
+                    Arrays.fill(iterationData, y * areaWidth + this.x0 + 1, y * areaWidth + this.x1, value);
+                iterationSum.add((long) value * innerWidth * innerHeight);
+                reportProgress(innerWidth * innerHeight, this.onProgress);
+                return;
+            }
+
+            if (innerWidth <= SUBDIVISION_MIN_SIZE || innerHeight <= SUBDIVISION_MIN_SIZE) {
+                computeTile(iterationData, this.x0 + 1, this.y0 + 1, this.x1, this.y1);
+                reportProgress(innerWidth * innerHeight, this.onProgress);
+                return;
+            }
+
+            int xMid = (this.x0 + this.x1) >>> 1;
+            int yMid = (this.y0 + this.y1) >>> 1;
+            computeTile(iterationData, xMid, this.y0 + 1, xMid + 1, this.y1);
+            computeTile(iterationData, this.x0 + 1, yMid, xMid, yMid + 1);
+            computeTile(iterationData, xMid + 1, yMid, this.x1, yMid + 1);
+            reportProgress(innerWidth + innerHeight - 1, this.onProgress);
+
+            invokeAll(new SubdivisionTask(this.x0, this.y0, xMid, yMid, this.onProgress),
+                    new SubdivisionTask(xMid, this.y0, this.x1, yMid, this.onProgress),
+                    new SubdivisionTask(this.x0, yMid, xMid, this.y1, this.onProgress),
+                    new SubdivisionTask(xMid, yMid, this.x1, this.y1, this.onProgress));
+        }
+
+        /**
+         * @return the number of iterations shared by all border pixels or -1 if
+         *         they differ
+         */
+        private int getBorderValue() {
+            int top = this.y0 * areaWidth;
+            int bottom = this.y1 * areaWidth;
+            int value = iterationData[top + this.x0];
+            for (int x = this.x0; x <= this.x1; x++)
+                if (iterationData[top + x] != value || iterationData[bottom + x] != value)
+                    return -1;
+            for (int y = this.y0 + 1; y < this.y1; y++)
+                if (iterationData[y * areaWidth + this.x0] != value || iterationData[y * areaWidth + this.x1] != value)
+                    return -1;
+            return value;
+        }
+    }
+
+    /**
+     * This method computes the iterations of all pixels inside of a rectangle of
+     * the area and writes them into the iteration data.
+     */
+    private void computeTile(int[] target, int xBegin, int yBegin, int xEnd, int yEnd) {
+        this.computeTile(target, 0, xBegin, yBegin, xEnd, yEnd);
+    }
+
+    /**
+     * Same as above, but the target only holds the rows of the area from targetY
+     * on. The number of iterations of a rectangle of the iteration data is added
+     * to the total of the build while the rectangle is still in the cache, its
+     * time is recorded if metrics are collected or a flight recording is running.
+     */
+    private void computeTile(int[] target, int targetY, int xBegin, int yBegin, int xEnd, int yEnd) {
+        RenderMetrics metrics = this.metrics;
+        RenderMetrics.TileEvent event = new RenderMetrics.TileEvent();
+        if (metrics == null && !event.isEnabled() && target != this.iterationData) {
+            this.iterateTile(target, targetY, xBegin, yBegin, xEnd, yEnd);
+            return;
+        }
+        event.begin();
+        long start = System.nanoTime();
+        this.iterateTile(target, targetY, xBegin, yBegin, xEnd, yEnd);
+        long time = System.nanoTime() - start;
+        event.end();
+        long iterations = 0;
+        for (int py = yBegin; py < yEnd; py++) {
+            int offset = (py - targetY) * areaWidth;
+            for (int px = xBegin; px < xEnd; px++)
+                iterations += target[offset + px];
+        }
+        if (target == this.iterationData)
+            this.iterationSum.add(iterations);
+        if (metrics != null)
+            metrics.addTile(xBegin, yBegin, xEnd, yEnd, time, iterations);
+        if (event.shouldCommit()) {
+            event.x = xBegin;
+            event.y = yBegin;
+            event.width = xEnd - xBegin;
+            event.height = yEnd - yBegin;
+            event.iterations = iterations;
+            event.commit();
+        }
+    }
+
+    private void iterateTile(int[] target, int targetY, int xBegin, int yBegin, int xEnd, int yEnd) {
+        double s = this.rangeRe / (double) areaWidth;
+        if (this.referenceOrbit != null) {
+            this.computeDeepTile(target, targetY, s, xBegin, yBegin, xEnd, yEnd);
+            return;
+        }
+        RowKernel kernel = this.getKernel();
+        OrbitState state = null;
+        float[] smooth = target == this.iterationData ? this.smoothData : null;
+        if (this.orbitState != null && target == this.iterationData) {
+            state = new OrbitState();
+            kernel = null;
+        }
+        if (smooth != null)
+            kernel = null;
+        for (int py = yBegin; py < yEnd; py++) {
+            if (!isBuilding)
+                return;
+            double cIm = this.getIm(s, py);
+            int offset = (py - targetY) * areaWidth;
+            if (kernel != null) {
+                kernel.iterateRow(this, s, cIm, xBegin, xEnd, target, offset);
+                continue;
+            }
+            for (int px = xBegin; px < xEnd; px++)
+                target[offset + px] = this.iterateAt(px, py, state, smooth, offset + px);
+        }
+        if (state != null)
+            this.orbitState.addAll(state);
+    }
+
+    /**
+     * This method computes a single pixel of the area.
+     */
+    private int computePixel(int px, int py, OrbitState state, float[] smooth) {
+        return this.iterateAt(px, py, state, smooth, py * areaWidth + px);
+    }
+
+    /**
+     * This method iterates the point at the position x, y of the area, given in
+     * pixels that need not be whole numbers, in the precision of the build.
+     */
+    private int iterateAt(double x, double y, OrbitState state, float[] smooth, int index) {
+        double s = this.rangeRe / (double) this.areaWidth;
+        switch (this.tier) {
+        case FLOAT:
+            return this.iterateFloat(this.minRe + s * x, this.getIm(s, y), smooth, index);
+        case DOUBLE_DOUBLE:
+            return this.iterateDoubleDouble(x, y, smooth, index);
+        case PERTURBATION:
+            return this.referenceOrbit.iterate(-this.rangeRe / 2.0D + s * x, this.rangeIm / 2.0D - s * y, this.nMax,
+                    smooth, index);
+        default:
+            return this.iterate(this.minRe + s * x, this.getIm(s, y), state, smooth, index);
+        }
+    }
+
+    /**
+     * This method computes a rectangle of a deep zoom. Every pixel is given by
+     * its distance to the center of the area, which is the reference point.
+     */
+    private void computeDeepTile(int[] target, int targetY, double s, int xBegin, int yBegin, int xEnd, int yEnd) {
+        ReferenceOrbit orbit = this.referenceOrbit;
+        float[] smooth = target == this.iterationData ? this.smoothData : null;
+        double originRe = -this.rangeRe / 2.0D;
+        double originIm = this.rangeIm / 2.0D;
+        for (int py = yBegin; py < yEnd; py++) {
+            if (!isBuilding)
+                return;
+            double dcIm = originIm - s * (double) py;
+            int offset = (py - targetY) * areaWidth;
+            for (int px = xBegin; px < xEnd; px++) {
+                double dcRe = originRe + s * (double) px;
+                target[offset + px] = orbit.iterate(dcRe, dcIm, this.nMax, smooth, offset + px);
+            }
+        }
+    }
+
+    /**
+     * @return the vector kernel of the precision of the build or null if the
+     *         scalar iterate() is used
+     */
+    private RowKernel getKernel() {
+        if (!this.useVectorKernel)
+            return null;
+        if (this.tier == Precision.FLOAT)
+            return FLOAT_VECTOR_KERNEL;
+        return this.tier == Precision.DOUBLE ? VECTOR_KERNEL : null;
+    }
+
+    private static RowKernel loadVectorKernel(String name) {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            return null;
+        try {
+            return (RowKernel) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private void reportProgress(int pixels, final Executable<Integer> onProgress) {
+        if (onProgress == null)
+            return;
+        long completed = this.pixelsCompleted.addAndGet(pixels);
+        final int percentage = (int) Math.round(completed * 100.0D / (double) this.pixelsTotal);
+        synchronized (this.pixelsCompleted) {
+            if (!isBuilding || percentage <= this.percentageCompleted || percentage >= 100)
+                return;
+            this.percentageCompleted = percentage;
+            onProgress.run(percentage);
+        }
+    }
+
+    public synchronized void abort() {
+        if (this.isBuilding) {
+            this.hasBeenAborted = true;
+            Mandelbrot preview = this.currentPreview;
+            if (preview != null)
+                preview.abort();
+            if (this.renderFuture != null)
+                this.renderFuture.cancel(false);
+        }
+        this.isBuilding = false;
+    }
+
+    /**
+     * @param state  if not null, pixels that do not diverge are added to it
+     * @param smooth if not null, the fractional part of the number of iterations
+     *               of a diverging pixel is stored in it
+     * @param index  index of the pixel in the iteration data
+     */
+    private int iterate(double cRe, double cIm, OrbitState state, float[] smooth, int index) {
+        if (this.useInteriorCheck && isInCardioidOrBulb(cRe, cIm)) {
+            if (state != null)
+                state.add(index, Double.NaN, Double.NaN);
+            return this.nMax;
+        }
+        if (this.usePeriodicityCheck)
+            return iteratePeriodic(cRe, cIm, 0.0D, 0.0D, 0, state, smooth, index);
+        double zRe = 0.0D;
+        double zIm = 0.0D;
+        for (int n = 0; n < this.nMax; ++n) {
+            double sqrZRe = zRe * zRe - zIm * zIm;
+            double sqrZIm = zRe * zIm + zIm * zRe;
+            zRe = sqrZRe + cRe;
+            zIm = sqrZIm + cIm;
+            if (zRe * zRe + zIm * zIm > ESCAPE_RADIUS * ESCAPE_RADIUS) {
+                if (smooth != null)
+                    smooth[index] = getSmoothFraction(zRe, zIm, cRe, cIm);
+                return n;
+            }
+        }
+        if (state != null)
+            state.add(index, zRe, zIm);
+        return this.nMax;
+    }
+
+    /**
+     * This method continues the sequence of a pixel that did not diverge within
+     * nBegin iterations, starting at its last element.
+     */
+    private int continueIteration(double cRe, double cIm, double zRe, double zIm, int nBegin, OrbitState state,
+            float[] smooth, int index) {
+        if (this.usePeriodicityCheck)
+            return iteratePeriodic(cRe, cIm, zRe, zIm, nBegin, state, smooth, index);
+        for (int n = nBegin; n < this.nMax; ++n) {
+            double sqrZRe = zRe * zRe - zIm * zIm;
+            double sqrZIm = zRe * zIm + zIm * zRe;
             zRe = sqrZRe + cRe;
             zIm = sqrZIm + cIm;
             if (zRe * zRe + zIm * zIm > ESCAPE_RADIUS * ESCAPE_RADIUS) {
+                if (smooth != null)
+                    smooth[index] = getSmoothFraction(zRe, zIm, cRe, cIm);
                 return n;
             }
         }
+        if (state != null)
+            state.add(index, zRe, zIm);
         return this.nMax;
     }
 
+    /**
+     * Same as iterate() but the sequence is compared to a saved element whose
+     * index is doubled every time it is reached (Brent's cycle detection). If the
+     * sequence comes back to that element it is periodic and will never diverge.
+     * The sequence starts with the element zRe + zIm * i at index nBegin.
+     */
+    private int iteratePeriodic(double cRe, double cIm, double zRe, double zIm, int nBegin, OrbitState state,
+            float[] smooth, int index) {
+        double savedRe = zRe;
+        double savedIm = zIm;
+        int checkpoint = nBegin + 8;
+        for (int n = nBegin; n < this.nMax; ++n) {
+            double sqrZRe = zRe * zRe - zIm * zIm;
+            double sqrZIm = zRe * zIm + zIm * zRe;
+            zRe = sqrZRe + cRe;
+            zIm = sqrZIm + cIm;
+            if (zRe * zRe + zIm * zIm > ESCAPE_RADIUS * ESCAPE_RADIUS) {
+                if (smooth != null)
+                    smooth[index] = getSmoothFraction(zRe, zIm, cRe, cIm);
+                return n;
+            }
+            if (Math.abs(zRe - savedRe) <= this.periodicityTolerance
+                    && Math.abs(zIm - savedIm) <= this.periodicityTolerance) {
+                if (state != null)
+                    state.add(index, Double.NaN, Double.NaN);
+                return this.nMax;
+            }
+            if (n == checkpoint) {
+                savedRe = zRe;
+                savedIm = zIm;
+                checkpoint += checkpoint - nBegin;
+            }
+        }
+        if (state != null)
+            state.add(index, zRe, zIm);
+        return this.nMax;
+    }
+
+    /**
+     * Same as iterate() but with floats, which is only faster if several pixels
+     * are iterated at once (see FloatVectorKernel). The arithmetic is the same
+     * as in that kernel. The last element of sequences that do not diverge is not
+     * kept.
+     */
+    private int iterateFloat(double cReExact, double cImExact, float[] smooth, int index) {
+        if (this.useInteriorCheck && isInCardioidOrBulb(cReExact, cImExact))
+            return this.nMax;
+        final float cRe = (float) cReExact;
+        final float cIm = (float) cImExact;
+        final float tolerance = (float) this.periodicityTolerance;
+        final float escape = ESCAPE_RADIUS * ESCAPE_RADIUS;
+        float zRe = 0.0F;
+        float zIm = 0.0F;
+        float savedRe = 0.0F;
+        float savedIm = 0.0F;
+        int checkpoint = 8;
+        for (int n = 0; n < this.nMax; ++n) {
+            float sqrZRe = zRe * zRe - zIm * zIm;
+            float sqrZIm = zRe * zIm + zIm * zRe;
+            zRe = sqrZRe + cRe;
+            zIm = sqrZIm + cIm;
+            if (zRe * zRe + zIm * zIm > escape) {
+                if (smooth != null)
+                    smooth[index] = getSmoothFraction(zRe, zIm, cRe, cIm);
+                return n;
+            }
+            if (this.usePeriodicityCheck) {
+                if (Math.abs(zRe - savedRe) <= tolerance && Math.abs(zIm - savedIm) <= tolerance)
+                    return this.nMax;
+                if (n == checkpoint) {
+                    savedRe = zRe;
+                    savedIm = zIm;
+                    checkpoint <<= 1;
+                }
+            }
+        }
+        return this.nMax;
+    }
+
+    /**
+     * Same as iterate() but every number is the unevaluated sum of two doubles
+     * (double-double), which gives about 32 significant digits. The point is
+     * given by its position x, y in pixels, so it is computed from the exact
+     * origin and spacing of the pixels. The tolerance of the periodicity check
+     * shrinks with the spacing of the pixels. The last element of sequences that
+     * do not diverge is not kept.
+     */
+    private int iterateDoubleDouble(double x, double y, float[] smooth, int index) {
+        final double[] origin = this.exactOrigin;
+        final double sHi = this.exactSpacing[0];
+        final double sLo = this.exactSpacing[1];
+
+        // cRe = minRe + s * x
+        double p = sHi * x;
+        double e = Math.fma(sHi, x, -p) + sLo * x;
+        double sum = origin[0] + p;
+        double v = sum - origin[0];
+        e += (origin[0] - (sum - v)) + (p - v) + origin[1];
+        final double cReHi = sum + e;
+        final double cReLo = e - (cReHi - sum);
+        // cIm = maxIm - s * y, negated from the mirror image below the axis (see getIm())
+        final boolean below = y > this.mirrorSum / 2.0D;
+        final double row = below ? this.mirrorSum - y : y;
+        p = -sHi * row;
+        e = Math.fma(-sHi, row, -p) - sLo * row;
+        sum = origin[2] + p;
+        v = sum - origin[2];
+        e += (origin[2] - (sum - v)) + (p - v) + origin[3];
+        final double imSum = sum + e;
+        final double cImHi = below ? -imSum : imSum;
+        final double cImLo = below ? (imSum - sum) - e : e - (imSum - sum);
+
+        if (this.useInteriorCheck && isInCardioidOrBulb(cReHi, cImHi))
+            return this.nMax;
+        final double tolerance = this.periodicityTolerance * Math.min(1.0D, sHi / DEEP_ZOOM_SPACING);
+        double reHi = 0.0D, reLo = 0.0D, imHi = 0.0D, imLo = 0.0D;
+        double savedReHi = 0.0D, savedReLo = 0.0D, savedImHi = 0.0D, savedImLo = 0.0D;
+        int checkpoint = 8;
+        for (int n = 0; n < this.nMax; ++n) {
+            // re^2 - im^2 + cRe
+            double aHi = reHi * reHi;
+            double aLo = Math.fma(reHi, reHi, -aHi) + 2.0D * reHi * reLo;
+            double bHi = -imHi * imHi;
+            double bLo = Math.fma(-imHi, imHi, -bHi) - 2.0D * imHi * imLo;
+            sum = aHi + bHi;
+            v = sum - aHi;
+            e = (aHi - (sum - v)) + (bHi - v) + aLo + bLo;
+            aHi = sum + e;
+            aLo = e - (aHi - sum);
+            sum = aHi + cReHi;
+            v = sum - aHi;
+            e = (aHi - (sum - v)) + (cReHi - v) + aLo + cReLo;
+            double nextReHi = sum + e;
+            double nextReLo = e - (nextReHi - sum);
+            // 2 * re * im + cIm
+            aHi = 2.0D * reHi * imHi;
+            aLo = Math.fma(2.0D * reHi, imHi, -aHi) + 2.0D * (reHi * imLo + reLo * imHi);
+            sum = aHi + cImHi;
+            v = sum - aHi;
+            e = (aHi - (sum - v)) + (cImHi - v) + aLo + cImLo;
+            imHi = sum + e;
+            imLo = e - (imHi - sum);
+            reHi = nextReHi;
+            reLo = nextReLo;
+
+            if (reHi * reHi + imHi * imHi > ESCAPE_RADIUS * ESCAPE_RADIUS) {
+                if (smooth != null)
+                    smooth[index] = getSmoothFraction(reHi, imHi, cReHi, cImHi);
+                return n;
+            }
+            if (this.usePeriodicityCheck) {
+                if (Math.abs((reHi - savedReHi) + (reLo - savedReLo)) <= tolerance
+                        && Math.abs((imHi - savedImHi) + (imLo - savedImLo)) <= tolerance)
+                    return this.nMax;
+                if (n == checkpoint) {
+                    savedReHi = reHi;
+                    savedReLo = reLo;
+                    savedImHi = imHi;
+                    savedImLo = imLo;
+                    checkpoint <<= 1;
+                }
+            }
+        }
+        return this.nMax;
+    }
+
+    /**
+     * This method computes the fractional part of the continuous number of
+     * iterations n + 1 - log2(log2|z|) of a sequence that has just diverged. The
+     * sequence is continued for a few iterations, so the element is large enough
+     * for the formula to be continuous between pixels with n and n + 1
+     * iterations.
+     * 
+     * @return a number from about -0.5 to 1 (pixels that escape the circle of
+     *         radius 2 by far get a negative fraction)
+     */
+    static float getSmoothFraction(double zRe, double zIm, double cRe, double cIm) {
+        for (int i = 0; i < SMOOTH_EXTRA_ITERATIONS; i++) {
+            double sqrZRe = zRe * zRe - zIm * zIm;
+            double sqrZIm = zRe * zIm + zIm * zRe;
+            zRe = sqrZRe + cRe;
+            zIm = sqrZIm + cIm;
+        }
+        double log2Abs = Math.log(zRe * zRe + zIm * zIm) / (2.0D * LN2);
+        double fraction = 1.0D + SMOOTH_EXTRA_ITERATIONS - Math.log(log2Abs) / LN2;
+        return (float) Math.max(-1.0D, Math.min(2.0D, fraction));
+    }
+
+    /**
+     * This method checks if a number lies inside of the main cardioid or the
+     * period-2 bulb. Both are part of the set, so no iteration is needed there.
+     */
+    static boolean isInCardioidOrBulb(double cRe, double cIm) {
+        double cIm2 = cIm * cIm;
+        double x = cRe - 0.25D;
+        double q = x * x + cIm2;
+        if (q * (q + x) <= 0.25D * cIm2)
+            return true;
+        double bulbRe = cRe + 1.0D;
+        return bulbRe * bulbRe + cIm2 <= 0.0625D;
+    }
+
     public void exportYAML(String path) throws FileNotFoundException, UnsupportedEncodingException {
         PrintWriter writer = new PrintWriter(path, "UTF-8");
+        this.writeYAML(writer);
+        writer.close();
+    }
+
+    /**
+     * This method writes the iteration data together with the configuration into
+     * an iteration data file (see IterationFile), so the area can be archived and
+     * colored again without computing it. It can only be called when finished
+     * building.
+     */
+    public void exportIterations(String path) throws IOException {
+        if (!this.isBuilt)
+            throw new IllegalStateException("The object has not been built");
+        IterationFile.write(new File(path), this.fullWidth, this.fullHeight, this.areaWidth, this.areaHeight,
+                this.nMax, this.getYAML(), this.iterationData, this.smoothData);
+    }
+
+    /**
+     * @return the configuration as it is written by exportYAML()
+     */
+    String getYAML() {
+        StringWriter text = new StringWriter();
+        PrintWriter writer = new PrintWriter(text);
+        this.writeYAML(writer);
+        writer.flush();
+        return text.toString();
+    }
+
+    private void writeYAML(PrintWriter writer) {
         writer.println("# Area of the complex plane given by two numbers 'min' and 'max'");
-        writer.println("minRe: " + this.minRe);
-        writer.println("minIm: " + this.minIm);
-        writer.println("maxRe: " + this.maxRe);
-        writer.println("maxIm: " + this.maxIm);
+        writer.println("minRe: " + toYAML(this.exactMinRe));
+        writer.println("minIm: " + toYAML(this.exactMinIm));
+        writer.println("maxRe: " + toYAML(this.exactMaxRe));
+        writer.println("maxIm: " + toYAML(this.exactMaxIm));
         writer.println("# Max amount of iterations (iteration depth)");
         writer.println("nMax: " + this.nMax);
         writer.println("# Color (hexadecimal representation) for points inside of the mandelbrot set");
@@ -671,11 +2603,99 @@ public class Mandelbrot {
         writer.println("# > Last color for 0 iterations reached");
         writer.println("# At least one color must be specified");
         writer.println("colorGradient: " + Arrays.toString(this.colorGradient));
-        writer.close();
+        this.exportOptions(writer);
+    }
+
+    /**
+     * This method writes a coordinate as a number if a double represents it
+     * exactly and as a string of arbitrary precision otherwise.
+     */
+    private static String toYAML(BigDecimal value) {
+        double rounded = value.doubleValue();
+        if (new BigDecimal(rounded).compareTo(value) == 0)
+            return Double.toString(rounded);
+        return "'" + value.toString() + "'";
+    }
+
+    /**
+     * This method writes all rendering options that differ from their default
+     * values, so that the exported file reproduces the same image.
+     */
+    private void exportOptions(PrintWriter writer) {
+        Mandelbrot defaults = new Mandelbrot(1, 1, 0.0D, 0.0D, 1.0D, 1.0D, 0, 0, new int[] { 0 });
+        List<String> options = new ArrayList<>();
+        if (this.useInteriorCheck != defaults.useInteriorCheck)
+            options.add("interiorCheck: " + this.useInteriorCheck);
+        if (this.useSymmetry != defaults.useSymmetry)
+            options.add("symmetry: " + this.useSymmetry);
+        if (this.usePeriodicityCheck != defaults.usePeriodicityCheck)
+            options.add("periodicityCheck: " + this.usePeriodicityCheck);
+        if (this.periodicityTolerance != defaults.periodicityTolerance)
+            options.add("periodicityTolerance: " + this.periodicityTolerance);
+        if (this.tileSize != defaults.tileSize)
+            options.add("tileSize: " + this.tileSize);
+        if (this.useVectorKernel != defaults.useVectorKernel)
+            options.add("vectorKernel: " + this.useVectorKernel);
+        if (this.useSubdivision != defaults.useSubdivision)
+            options.add("subdivision: " + this.useSubdivision);
+        if (this.verifySubdivision != defaults.verifySubdivision)
+            options.add("verifySubdivision: " + this.verifySubdivision);
+        if (this.stripHeight != defaults.stripHeight)
+            options.add("stripHeight: " + this.stripHeight);
+        if (this.cacheDirectory != null)
+            options.add("cache: '" + this.cacheDirectory.replace("'", "''") + "'");
+        if (this.cacheSize != defaults.cacheSize)
+            options.add("cacheSize: " + this.cacheSize);
+        if (this.forcePerturbation != defaults.forcePerturbation)
+            options.add("perturbation: " + this.forcePerturbation);
+        if (!this.precision.equals(defaults.precision))
+            options.add("precision: " + this.precision);
+        if (this.useSeriesApproximation != defaults.useSeriesApproximation)
+            options.add("seriesApproximation: " + this.useSeriesApproximation);
+        if (this.useProgressiveRendering != defaults.useProgressiveRendering)
+            options.add("progressive: " + this.useProgressiveRendering);
+        if (this.pngCompression != defaults.pngCompression)
+            options.add("pngCompression: " + this.pngCompression);
+        if (!this.pngFilter.equals(defaults.pngFilter))
+            options.add("pngFilter: " + this.pngFilter);
+        if (this.useSmoothColoring != defaults.useSmoothColoring)
+            options.add("smoothColoring: " + this.useSmoothColoring);
+        if (this.supersampling != defaults.supersampling)
+            options.add("supersampling: " + this.supersampling);
+        if (this.supersamplingThreshold != defaults.supersamplingThreshold)
+            options.add("supersamplingThreshold: " + this.supersamplingThreshold);
+        if (options.isEmpty())
+            return;
+        writer.println("# Rendering options");
+        for (String option : options)
+            writer.println(option);
     }
 
     public static void main(String[] args) {
 
+        String metricsPath = null;
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        int m = arguments.indexOf("--metrics");
+        if (m >= 0 && m + 1 < arguments.size()) {
+            metricsPath = arguments.remove(m + 1);
+            arguments.remove(m);
+            args = arguments.toArray(new String[0]);
+        }
+        String iterationsPath = null;
+        int n = arguments.indexOf("--iterations");
+        if (n >= 0 && n + 1 < arguments.size()) {
+            iterationsPath = arguments.remove(n + 1);
+            arguments.remove(n);
+            args = arguments.toArray(new String[0]);
+        }
+        List<InetSocketAddress> workers = null;
+        int w = arguments.indexOf("--workers");
+        if (w >= 0 && w + 1 < arguments.size()) {
+            workers = parseWorkers(arguments.remove(w + 1));
+            arguments.remove(w);
+            args = arguments.toArray(new String[0]);
+        }
+
         int k = 0;
         if (args[0].startsWith("-")) {
             k++;
@@ -683,15 +2703,52 @@ public class Mandelbrot {
                 shouldOpen = true;
             if (args[0].indexOf('v') != -1)
                 isVerbose = true;
+            if (args[0].indexOf('s') != -1)
+                shouldStream = true;
+            if (args[0].indexOf('b') != -1)
+                isBatch = true;
+            if (args[0].indexOf('t') != -1)
+                isPyramid = true;
+        }
+
+        if (args[k].equals("worker")) {
+            runWorker(Integer.parseInt(args[k + 1]), args.length > k + 2 ? args[k + 2] : null);
+            return;
+        }
+        if (args[k].equals("serve")) {
+            serve(args[k + 1], Integer.parseInt(args[k + 2]),
+                    args.length > k + 3 ? Integer.parseInt(args[k + 3]) : SERVER_CACHE_SIZE);
+            return;
+        }
+        if (args[k].equals("recolor")) {
+            recolor(args[k + 1], args[k + 2], args[k + 3]);
+            return;
         }
 
         String configFile = args[k];
         int fullWidth = Integer.parseInt(args[k + 1]);
         int fullHeight = Integer.parseInt(args[k + 2]);
         String outputPath = args[k + 3];
+        if (workers != null && (isBatch || isPyramid || shouldStream)) {
+            System.out.println("--workers can only be used for a single image without -s, -b or -t");
+            System.exit(-1);
+        }
+        if (iterationsPath != null && (isBatch || isPyramid || shouldStream)) {
+            System.out.println("--iterations can only be used for a single image without -s, -b or -t");
+            System.exit(-1);
+        }
+        if (isBatch) {
+            renderBatch(configFile, fullWidth, fullHeight, outputPath);
+            return;
+        }
+        if (isPyramid) {
+            renderPyramid(configFile, fullWidth, fullHeight, outputPath);
+            return;
+        }
         try {
 
             Mandelbrot mand = Mandelbrot.fromYAMLFile(configFile, fullWidth, fullHeight);
+            mand.collectMetrics = metricsPath != null;
 
             try {
                 mand.exportYAML(configFile);
@@ -700,7 +2757,7 @@ public class Mandelbrot {
                 e.printStackTrace();
             }
 
-            mand.build((percentage) -> { // On progress update
+            Executable<Integer> onProgress = (percentage) -> { // On progress update
 
                 String progressStr = "";
                 while (progressStr.length() < PROGRESS_BAR_WIDTH * (percentage / 100.0D))
@@ -711,55 +2768,338 @@ public class Mandelbrot {
                 str += "    [in progress] \r";
                 System.out.print(str);
 
-            }, () -> { // On finish
-
-                // Print a full progress bar
-                String str = "";
-                for (int i = 0; i < PROGRESS_BAR_WIDTH; i++)
-                    str += "#";
-                System.out.print("|" + str + "| " + "100%   [done]  ");
-
-                if (isVerbose) {
-                    System.out.println("           ");
-                    System.out.println();
-                    System.out.println("> output file: " + outputPath);
-                    System.out.println("> image size: " + mand.fullWidth + "x" + mand.fullHeight);
-                    System.out.println("> size of the mandelbrot area: " + mand.areaWidth + "x" + mand.areaHeight);
-                    System.out.println("> configurations (" + configFile + "): ");
-                    System.out.println("   - min complex number: " + mand.minRe + (mand.minIm > 0.0D ? "+" : "")
-                            + mand.minIm + "i");
-                    System.out.println("   - max complex number: " + mand.maxRe + (mand.maxIm > 0.0D ? "+" : "")
-                            + mand.maxIm + "i");
-                    System.out.println("   - max iterations: " + mand.nMax);
-                    System.out.println("   - inner color: " + mand.innerColor);
-                    System.out.println("   - color gradient: " + Arrays.toString(mand.colorGradient));
-                    System.out.println("> build information: ");
-                    System.out.println("   - build time: "
-                            + (double) (System.currentTimeMillis() - mand.startTime) / 1000.0D + "s");
-                    long numIterationsTotal = mand.countTotalIterations();
+            };
+            DistributedRenderer coordinator = null;
+            if (workers != null) {
+                try {
+                    coordinator = mand.renderDistributed(workers, onProgress);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else if (shouldStream) {
+                try {
+                    mand.exportImageStreaming(outputPath, onProgress);
+                } catch (IOException e) {
+                    System.out.println("The image could not be written to '" + outputPath + "'");
+                    System.exit(-1);
+                }
+            } else {
+                Executable<Mandelbrot> onPreview = (preview) -> preview.exportImage(outputPath);
+                mand.render(DEFAULT_POOL, onProgress, onPreview).join();
+            }
+
+            // Print a full progress bar
+            String str = "";
+            for (int i = 0; i < PROGRESS_BAR_WIDTH; i++)
+                str += "#";
+            System.out.print("|" + str + "| " + "100%   [done]  ");
+
+            if (isVerbose) {
+                System.out.println("           ");
+                System.out.println();
+                System.out.println("> output file: " + outputPath);
+                System.out.println("> image size: " + mand.fullWidth + "x" + mand.fullHeight);
+                System.out.println("> size of the mandelbrot area: " + mand.areaWidth + "x" + mand.areaHeight);
+                System.out.println("> configurations (" + configFile + "): ");
+                System.out.println("   - min complex number: " + mand.minRe + (mand.minIm > 0.0D ? "+" : "")
+                        + mand.minIm + "i");
+                System.out.println("   - max complex number: " + mand.maxRe + (mand.maxIm > 0.0D ? "+" : "")
+                        + mand.maxIm + "i");
+                System.out.println("   - max iterations: " + mand.nMax);
+                System.out.println("   - inner color: " + mand.innerColor);
+                System.out.println("   - color gradient: " + Arrays.toString(mand.colorGradient));
+                System.out.println("> build information: ");
+                System.out.println("   - precision: " + mand.tier
+                        + (mand.precision.equals("auto") && !mand.forcePerturbation
+                                ? " (chosen by the pixel spacing " + mand.rangeRe / mand.areaWidth + ")"
+                                : " (set in the configuration)"));
+                RowKernel kernel = mand.getKernel();
+                if (mand.referenceOrbit != null)
+                    System.out.println("   - kernel: perturbation (reference orbit: "
+                            + (mand.referenceOrbit.getLength() - 1) + " iterations, "
+                            + mand.referenceOrbit.getSkipped() + " skipped by series approximation)");
+                else
+                    System.out.println(
+                            "   - kernel: " + (kernel != null ? "vector (" + kernel.lanes() + " lanes)" : "scalar"));
+                System.out.println("   - build time: "
+                        + (double) (System.currentTimeMillis() - mand.startTime) / 1000.0D + "s");
+                if (mand.loadedFromCache)
+                    System.out.println("   - iteration data loaded from the cache (" + mand.cacheDirectory + ")");
+                if (mand.useSubdivision)
+                    System.out.println("   - rendering: rectangle subdivision");
+                if (mand.subdivisionMismatches >= 0)
+                    System.out.println("   - pixels that differ from a full pass: " + mand.subdivisionMismatches);
+                if (mand.getMirroredRows() > 0)
+                    System.out.println("   - rows mirrored from the other side of the real axis: "
+                            + mand.getMirroredRows() + " of " + mand.areaHeight);
+                if (coordinator != null)
+                    System.out.println("   - distributed in strips of " + mand.stripHeight + " rows: "
+                            + coordinator.getStripsPerWorker() + ", " + coordinator.getLocalStrips()
+                            + " computed locally, " + coordinator.getRetries() + " retries");
+                if (mand.useProgressiveRendering && !shouldStream)
+                    System.out.println("   - rendering: progressive (previews written to the output file)");
+                if (mand.getSupersampledPixels() >= 0)
+                    System.out.println("   - supersampled edge pixels: " + mand.getSupersampledPixels() + " ("
+                            + (double) Math.round(mand.getSupersampledPixels() * 1000.0D / mand.iterationData.length)
+                                    / 10.0D
+                            + "%) with " + mand.supersampling + " samples each");
+                if (mand.reusedPixels >= 0)
+                    System.out.println("   - pixels taken over from a previous build: " + mand.reusedPixels + " ("
+                            + (double) Math.round(mand.getReuseRatio() * 1000.0D) / 10.0D + "%)");
+                if (mand.metrics != null)
+                    System.out.println("   - load imbalance (busiest worker / mean of " + mand.metrics.getWorkerCount()
+                            + " workers): " + (double) Math.round(mand.metrics.getLoadImbalance() * 100.0D) / 100.0D);
+                if (shouldStream) {
+                    System.out.println("   - streamed in strips of " + mand.stripHeight + " rows");
+                } else {
+                    long numIterationsTotal = mand.getTotalIterations();
                     System.out.println("   - total number of iterations: " + numIterationsTotal);
                     System.out.println("   - average number of iterations per pixel: " + (double) Math
-                            .round((double) numIterationsTotal / (double) mand.iterationData.length * 100.0D) / 100.0D);
-                } else {
-                    System.out.println("> output: " + outputPath);
+                            .round((double) numIterationsTotal / (double) mand.iterationData.length * 100.0D)
+                            / 100.0D);
                 }
+            } else {
+                System.out.println("> output: " + outputPath);
+            }
 
+            if (!shouldStream) {
                 mand.exportImage(outputPath);
+                if (isVerbose && mand.encodeTime >= 0) {
+                    double seconds = (double) mand.encodeTime / 1E9;
+                    double megabytes = 3.0D * (double) mand.encodedPixels / (1024.0D * 1024.0D);
+                    System.out.println("> image written (" + mand.encodedFormat + "): "
+                            + (double) Math.round(seconds * 1000.0D) / 1000.0D + "s, "
+                            + (double) Math.round(megabytes / seconds * 10.0D) / 10.0D + " MB/s of RGB data");
+                }
+            }
 
-                if (shouldOpen) {
-                    try {
-                        Desktop.getDesktop().open(new File(outputPath));
-                    } catch (IOException err) {
-                    }
+            if (iterationsPath != null) {
+                try {
+                    long start = System.nanoTime();
+                    mand.exportIterations(iterationsPath);
+                    if (isVerbose)
+                        System.out.println("> iteration data written to " + iterationsPath + ": "
+                                + (double) Math.round((System.nanoTime() - start) / 1E6) / 1000.0D + "s, "
+                                + new File(iterationsPath).length() / 1024L + " KB");
+                } catch (IOException e) {
+                    System.out.println("The iteration data could not be written to '" + iterationsPath + "'");
                 }
-                ///////////////////////
+            }
+
+            if (metricsPath != null) {
+                try {
+                    mand.metrics.writeJSON(metricsPath);
+                    if (isVerbose)
+                        System.out.println("> metrics written to " + metricsPath);
+                } catch (IOException e) {
+                    System.out.println("The metrics could not be written to '" + metricsPath + "'");
+                }
+            }
+
+            if (shouldOpen) {
+                try {
+                    Desktop.getDesktop().open(new File(outputPath));
+                } catch (IOException err) {
+                }
+            }
+        } catch (FileNotFoundException | YAMLException e) {
+            System.out
+                    .println("The configuration file '" + configFile + "' was not found or the YAML data was corrupt");
+            System.exit(-1);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OutOfMemoryError)
+                System.out.println(OUT_OF_MEMORY_ERR);
+            else
+                System.out.println(e.getCause());
+            System.exit(-1);
+        }
+
+    }
+
+    /**
+     * This method renders all frames of a batch configuration file.
+     */
+    private static void renderBatch(String configFile, int fullWidth, int fullHeight, String outputPath) {
+        try {
+            Map<String, Object> yamlData;
+            try (InputStream inputStream = new FileInputStream(configFile)) {
+                yamlData = new Yaml().load(inputStream);
+            }
+            BatchRenderer batch = new BatchRenderer(yamlData, fullWidth, fullHeight, outputPath);
+            int count = batch.getFrameCount();
+            long startTime = System.currentTimeMillis();
+            batch.run(DEFAULT_POOL, (frame) -> {
+                String str = "frame " + (frame + 1) + "/" + count;
+                if (isVerbose)
+                    str += " -> " + batch.getFramePath(frame);
+                System.out.print(str + "    \r");
             });
+            System.out.println();
+            if (isVerbose) {
+                double seconds = (double) (System.currentTimeMillis() - startTime) / 1000.0D;
+                System.out.println("> frames: " + count + " (" + fullWidth + "x" + fullHeight + ")");
+                System.out.println("> total time: " + seconds + "s, " + (double) Math.round(count / seconds * 100.0D)
+                        / 100.0D + " frames per second");
+            }
+        } catch (IOException | YAMLException | ClassCastException | NullPointerException e) {
+            System.out
+                    .println("The configuration file '" + configFile + "' was not found or the YAML data was corrupt");
+            System.exit(-1);
+        } catch (MandelbrotConfigException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OutOfMemoryError)
+                System.out.println(OUT_OF_MEMORY_ERR);
+            else
+                System.out.println(e.getCause());
+            System.exit(-1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method writes a tile pyramid of the area of a configuration file.
+     * 
+     * @param tileSize edge length of a tile in pixels
+     * @param maxLevel highest level of the pyramid
+     */
+    private static void renderPyramid(String configFile, int tileSize, int maxLevel, String outputPath) {
+        try {
+            Mandelbrot root = Mandelbrot.fromYAMLFile(configFile, tileSize, tileSize).extendAreaToImageSize();
+            TilePyramid pyramid = new TilePyramid(root, maxLevel, tileSize, new File(outputPath), PYRAMID_CACHE_SIZE);
+            long count = pyramid.getTileCount();
+            long startTime = System.currentTimeMillis();
+            pyramid.run(DEFAULT_POOL, (tiles) -> System.out.print("tile " + tiles + "/" + count + "    \r"));
+            System.out.println();
+            if (isVerbose) {
+                double seconds = (double) (System.currentTimeMillis() - startTime) / 1000.0D;
+                System.out.println("> levels: 0 to " + maxLevel + " (" + tileSize + "x" + tileSize + " tiles)");
+                System.out.println("> tiles written: " + pyramid.getTilesWritten() + ", skipped because they exist: "
+                        + pyramid.getTilesSkipped());
+                System.out.println("> pixels taken over from parent tiles: " + pyramid.getPixelsReused());
+                System.out.println("> total time: " + seconds + "s");
+            }
         } catch (FileNotFoundException | YAMLException e) {
             System.out
                     .println("The configuration file '" + configFile + "' was not found or the YAML data was corrupt");
             System.exit(-1);
+        } catch (MandelbrotConfigException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OutOfMemoryError)
+                System.out.println(OUT_OF_MEMORY_ERR);
+            else
+                System.out.println(e.getCause());
+            System.exit(-1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method computes strips for coordinators until the process is stopped.
+     * 
+     * @param address address to listen on, null for the loopback interface
+     */
+    private static void runWorker(int port, String address) {
+        try {
+            RenderWorker worker = new RenderWorker(isVerbose ? System.out::println : (line) -> {
+                // empty
+            });
+            worker.start(port, address != null ? InetAddress.getByName(address) : null);
+            System.out.println("> worker listening on " + (address != null ? address : "127.0.0.1") + ":"
+                    + worker.getPort() + " with " + NUMTHREADS + " threads");
+        } catch (IOException e) {
+            System.out.println("The worker could not be started: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * @param list addresses of the form host:port, separated by commas
+     */
+    private static List<InetSocketAddress> parseWorkers(String list) {
+        List<InetSocketAddress> workers = new ArrayList<>();
+        for (String worker : list.split(",")) {
+            int colon = worker.lastIndexOf(':');
+            if (colon <= 0)
+                throw new IllegalArgumentException("'" + worker + "' is not of the form host:port");
+            workers.add(new InetSocketAddress(worker.substring(0, colon).trim(),
+                    Integer.parseInt(worker.substring(colon + 1).trim())));
+        }
+        return workers;
+    }
+
+    /**
+     * This method serves renders and tiles of the area of a configuration file
+     * over HTTP on the loopback interface until the process is stopped.
+     * 
+     * @param cacheSize maximum size of the cached images and iteration data in MB
+     */
+    private static void serve(String configFile, int port, int cacheSize) {
+        try {
+            Map<String, Object> yamlData;
+            try (InputStream inputStream = new FileInputStream(configFile)) {
+                yamlData = new Yaml().load(inputStream);
+            }
+            RenderServer server = new RenderServer(yamlData, DEFAULT_POOL, 1024L * 1024L * cacheSize,
+                    isVerbose ? System.out::println : (line) -> {
+                        // empty
+                    });
+            server.start(port);
+            System.out.println("> serving http://127.0.0.1:" + server.getPort() + "/ (/render, /tiles/z/x/y.png, "
+                    + "/stats) with a cache of " + cacheSize + " MB");
+        } catch (YAMLException | ClassCastException | NullPointerException e) {
+            System.out
+                    .println("The configuration file '" + configFile + "' was not found or the YAML data was corrupt");
+            System.exit(-1);
+        } catch (IOException e) {
+            System.out.println("The server could not be started: " + e.getMessage());
+            System.exit(-1);
+        } catch (MandelbrotConfigException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
         }
+    }
 
+    /**
+     * This method colors the iteration data of an iteration data file with the
+     * colors of a configuration file and writes the image.
+     */
+    private static void recolor(String iterationsFile, String configFile, String outputPath) {
+        Mandelbrot colors = null;
+        try {
+            colors = Mandelbrot.fromYAMLFile(configFile, 1, 1);
+        } catch (FileNotFoundException | YAMLException e) {
+            System.out
+                    .println("The configuration file '" + configFile + "' was not found or the YAML data was corrupt");
+            System.exit(-1);
+        } catch (MandelbrotConfigException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+        try {
+            long start = System.nanoTime();
+            Mandelbrot mand = Mandelbrot.fromIterationFile(iterationsFile, colors.innerColor, colors.colorGradient);
+            if (isVerbose)
+                System.out.println("> iteration data read from " + iterationsFile + ": " + mand.areaWidth + "x"
+                        + mand.areaHeight + ", nMax " + mand.nMax + ", "
+                        + (double) Math.round((System.nanoTime() - start) / 1E6) / 1000.0D + "s");
+            mand.exportImage(outputPath);
+            if (isVerbose)
+                System.out.println("> image written to " + outputPath + " (" + mand.fullWidth + "x"
+                        + mand.fullHeight + ")");
+        } catch (IOException e) {
+            System.out.println("The iteration data could not be read: " + e.getMessage());
+            System.exit(-1);
+        } catch (MandelbrotConfigException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
     }
 
     public static Mandelbrot fromYAMLFile(String path, int fullWidth, int fullHeight)
@@ -775,6 +3115,90 @@ public class Mandelbrot {
         return new Mandelbrot(yamlData, fullWidth, fullHeight);
     }
 
+    /**
+     * @return a built object with the iteration data, the colors and the options
+     *         of an iteration data file (see exportIterations()). The colors of
+     *         supersampled pixels are not stored, so it is not anti-aliased.
+     */
+    public static Mandelbrot fromIterationFile(String path) throws IOException, MandelbrotConfigException {
+        IterationFile file = IterationFile.read(new File(path));
+        Map<String, Object> yamlData;
+        try {
+            yamlData = new Yaml().load(file.config);
+        } catch (YAMLException | ClassCastException e) {
+            throw new MandelbrotConfigException("The configuration of '" + path + "' is corrupt");
+        }
+        Mandelbrot mandelbrot = new Mandelbrot(yamlData, file.fullWidth, file.fullHeight);
+        if (mandelbrot.areaWidth != file.width || mandelbrot.areaHeight != file.height
+                || mandelbrot.nMax != file.nMax)
+            throw new IOException("The iteration data of '" + path + "' does not match its configuration");
+        mandelbrot.iterationData = file.data;
+        mandelbrot.smoothData = file.smooth;
+        mandelbrot.useSmoothColoring = file.smooth != null;
+        mandelbrot.supersampling = 1;
+        mandelbrot.keepOrbitState = false;
+        long iterations = 0;
+        for (int value : file.data)
+            iterations += value;
+        mandelbrot.iterationSum.add(iterations);
+        mandelbrot.isBuilt = true;
+        return mandelbrot;
+    }
+
+    /**
+     * Same as above, but the iteration data is colored with other colors.
+     */
+    public static Mandelbrot fromIterationFile(String path, int innerColor, int[] colorGradient)
+            throws IOException, MandelbrotConfigException, IllegalArgumentException {
+        if (colorGradient.length == 0)
+            throw new IllegalArgumentException("There must be at least one color in the color gradient");
+        Mandelbrot mandelbrot = fromIterationFile(path);
+        mandelbrot.innerColor = innerColor;
+        mandelbrot.colorGradient = colorGradient;
+        mandelbrot.updateColorPalette();
+        return mandelbrot;
+    }
+
+    /**
+     * The arithmetic a build iterates with
+     */
+    static enum Precision {
+        FLOAT("float"), DOUBLE("double"), DOUBLE_DOUBLE("double-double"), PERTURBATION("perturbation");
+
+        private final String name;
+
+        private Precision(String name) {
+            this.name = name;
+        }
+
+        static Precision parse(String name) throws IllegalArgumentException {
+            for (Precision precision : values())
+                if (precision.name.equals(name))
+                    return precision;
+            throw new IllegalArgumentException("Unknown precision '" + name
+                    + "' (auto, float, double, double-double or perturbation)");
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    /**
+     * A kernel that computes the iterations of consecutive pixels of one row
+     */
+    static interface RowKernel {
+        int lanes();
+
+        void iterateRow(Mandelbrot mandelbrot, double s, double cIm, int xBegin, int xEnd, int[] out, int offset);
+    }
+
+    @FunctionalInterface
+    static interface RowRange {
+        void run(int yBegin, int yEnd);
+    }
+
     @FunctionalInterface
     static interface Executable<T> {
         void run(T v);
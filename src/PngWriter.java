@@ -0,0 +1,398 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A PNG encoder that writes an RGB image row by row, so the whole image never
+ * has to be in memory. The compressed rows are written as a sequence of IDAT
+ * chunks as soon as a chunk is full.
+ *
+ * Images that are completely in memory can also be encoded in parallel with
+ * encode(): the rows are split into blocks that are filtered and compressed
+ * independently and joined into one zlib stream (as pigz does).
+ */
+class PngWriter implements Closeable {
+    static final int FILTER_NONE = 0;
+    static final int FILTER_SUB = 1;
+    static final int FILTER_UP = 2;
+    static final int FILTER_AVERAGE = 3;
+    static final int FILTER_PAETH = 4;
+    static final int FILTER_ADAPTIVE = 5; // Filter type with the smallest sum of absolute differences per row
+    private static final String[] FILTER_NAMES = { "none", "sub", "up", "average", "paeth", "adaptive" };
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int BLOCK_SIZE = 1 << 17; // Minimum number of bytes of the rows of a parallel block
+    private static final int ADLER_BASE = 65521;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final int filter;
+    private final Deflater deflater;
+    private final DeflaterOutputStream idat;
+    private final RowFilter rowFilter;
+    private int rowsWritten = 0;
+
+    /**
+     * @param out    stream the PNG file is written to
+     * @param width  X-dimension of the image in pixels
+     * @param height Y-dimension of the image in pixels
+     */
+    PngWriter(OutputStream out, int width, int height) throws IOException {
+        this(out, width, height, Deflater.DEFAULT_COMPRESSION, FILTER_NONE);
+    }
+
+    /**
+     * @param level  compression level from 0 to 9 or -1 for the default level
+     * @param filter one of the FILTER constants
+     */
+    PngWriter(OutputStream out, int width, int height, int level, int filter) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.filter = filter;
+        this.rowFilter = new RowFilter(width);
+        this.deflater = new Deflater(level);
+        this.idat = new DeflaterOutputStream(new ChunkOutputStream(), this.deflater, CHUNK_SIZE);
+        writeHeader(this.out, width, height);
+    }
+
+    /**
+     * @return the filter constant of a name like 'paeth'
+     */
+    static int parseFilter(String name) throws IllegalArgumentException {
+        for (int i = 0; i < FILTER_NAMES.length; i++)
+            if (FILTER_NAMES[i].equalsIgnoreCase(name))
+                return i;
+        throw new IllegalArgumentException("Unknown PNG filter '" + name + "'");
+    }
+
+    /**
+     * This method appends rows to the image.
+     *
+     * @param rgb    pixels as 0xRRGGBB, one row after the other
+     * @param offset index of the first pixel in rgb
+     * @param rows   number of rows to write
+     */
+    void writeRows(int[] rgb, int offset, int rows) throws IOException {
+        if (this.rowsWritten + rows > this.height)
+            throw new IllegalStateException("The image has only " + this.height + " rows");
+        for (int r = 0; r < rows; r++)
+            this.idat.write(this.rowFilter.filter(rgb, offset + r * this.width, this.filter));
+        this.rowsWritten += rows;
+    }
+
+    /**
+     * This method finishes the image and closes the underlying stream.
+     */
+    public void close() throws IOException {
+        if (this.rowsWritten != this.height)
+            throw new IllegalStateException(
+                    "Only " + this.rowsWritten + " of " + this.height + " rows have been written");
+        this.idat.close();
+        this.deflater.end();
+        writeChunk(this.out, "IEND", new byte[0], 0);
+        this.out.close();
+    }
+
+    /**
+     * This method writes a whole image. Blocks of rows are filtered and
+     * compressed in parallel on the executor and written in order as soon as
+     * they are done. Every block but the last ends with a sync flush, so the
+     * compressed blocks can simply be concatenated; the checksums of the blocks
+     * are combined into the checksum of the whole stream.
+     *
+     * @param out    stream the PNG file is written to, it is not closed
+     * @param rgb    pixels as 0xRRGGBB, one row after the other
+     * @param level  compression level from 0 to 9 or -1 for the default level
+     * @param filter one of the FILTER constants
+     * @return number of bytes written
+     */
+    static long encode(OutputStream out, int[] rgb, int width, int height, int level, int filter,
+            Executor executor) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, width, height);
+
+        int rowsPerBlock = Math.max(1, BLOCK_SIZE / (1 + 3 * width));
+        List<CompletableFuture<Block>> blocks = new ArrayList<>();
+        for (int y = 0; y < height; y += rowsPerBlock) {
+            final int yBegin = y;
+            final int yEnd = Math.min(y + rowsPerBlock, height);
+            blocks.add(CompletableFuture.supplyAsync(
+                    () -> compressBlock(rgb, width, yBegin, yEnd, level, filter, yEnd == height), executor));
+        }
+
+        // zlib header: deflate with a 32K window, no preset dictionary
+        byte[] zlibHeader = { 0x78, (byte) 0x9C };
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        first.write(zlibHeader);
+        long adler = 1;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i).join();
+            adler = combineAdler(adler, block.adler, block.length);
+            byte[] compressed = block.data;
+            if (i == 0) {
+                first.write(compressed);
+                compressed = first.toByteArray();
+            }
+            if (i == blocks.size() - 1) {
+                compressed = Arrays.copyOf(compressed, compressed.length + 4);
+                int n = compressed.length - 4;
+                compressed[n] = (byte) (adler >>> 24);
+                compressed[n + 1] = (byte) (adler >>> 16);
+                compressed[n + 2] = (byte) (adler >>> 8);
+                compressed[n + 3] = (byte) adler;
+            }
+            writeChunk(data, "IDAT", compressed, compressed.length);
+        }
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+        return data.size();
+    }
+
+    /**
+     * This method filters and compresses the rows yBegin to yEnd - 1 into raw
+     * deflate data.
+     */
+    private static Block compressBlock(int[] rgb, int width, int yBegin, int yEnd, int level, int filter,
+            boolean last) {
+        RowFilter rowFilter = new RowFilter(width);
+        if (yBegin > 0)
+            rowFilter.setAbove(rgb, (yBegin - 1) * width);
+        Deflater deflater = new Deflater(level, true);
+        Adler32 adler = new Adler32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            for (int y = yBegin; y < yEnd; y++) {
+                byte[] row = rowFilter.filter(rgb, y * width, filter);
+                adler.update(row);
+                deflater.setInput(row);
+                while (!deflater.needsInput())
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished())
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Block(compressed.toByteArray(), adler.getValue(), (long) (yEnd - yBegin) * (1 + 3 * width));
+    }
+
+    /**
+     * @return the Adler-32 checksum of two concatenated byte sequences (as
+     *         adler32_combine() of zlib)
+     */
+    private static long combineAdler(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE)
+            sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE)
+            sum1 -= ADLER_BASE;
+        if (sum2 >= ((long) ADLER_BASE << 1))
+            sum2 -= ((long) ADLER_BASE << 1);
+        if (sum2 >= ADLER_BASE)
+            sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeHeader(DataOutputStream out, int width, int height) throws IOException {
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(8); // bit depth
+        data.writeByte(2); // color type RGB
+        data.writeByte(0); // compression method
+        data.writeByte(0); // filter method
+        data.writeByte(0); // no interlacing
+        writeChunk(out, "IHDR", header.toByteArray(), header.size());
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Compressed rows of a parallel block with the checksum and length of the
+     * uncompressed rows
+     */
+    private static class Block {
+        private final byte[] data;
+        private final long adler;
+        private final long length;
+
+        Block(byte[] data, long adler, long length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Converts consecutive rows of pixels into filtered PNG rows (filter type
+     * byte followed by the filtered RGB bytes)
+     */
+    private static class RowFilter {
+        private byte[] raw;
+        private byte[] above; // Bytes of the row above, zero for the first row
+        private final byte[][] filtered = new byte[5][];
+
+        RowFilter(int width) {
+            this.raw = new byte[3 * width];
+            this.above = new byte[3 * width];
+            for (int i = 0; i < this.filtered.length; i++)
+                this.filtered[i] = new byte[1 + 3 * width];
+        }
+
+        /**
+         * This method sets the row above the next row that is filtered.
+         */
+        void setAbove(int[] rgb, int offset) {
+            toBytes(rgb, offset, this.above);
+        }
+
+        /**
+         * @return the filtered row, which is overwritten by the next call
+         */
+        byte[] filter(int[] rgb, int offset, int filter) {
+            toBytes(rgb, offset, this.raw);
+            byte[] row = this.select(filter);
+            byte[] swap = this.above;
+            this.above = this.raw;
+            this.raw = swap;
+            return row;
+        }
+
+        private byte[] select(int filter) {
+            if (filter != FILTER_ADAPTIVE)
+                return this.apply(filter);
+            byte[] best = null;
+            long bestSum = Long.MAX_VALUE;
+            for (int type = FILTER_NONE; type <= FILTER_PAETH; type++) {
+                byte[] row = this.apply(type);
+                long sum = 0;
+                for (int i = 1; i < row.length; i++)
+                    sum += Math.abs((int) row[i]);
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    best = row;
+                }
+            }
+            return best;
+        }
+
+        private static void toBytes(int[] rgb, int offset, byte[] bytes) {
+            for (int x = 0, k = 0; k < bytes.length; x++) {
+                int color = rgb[offset + x];
+                bytes[k++] = (byte) (color >> 16);
+                bytes[k++] = (byte) (color >> 8);
+                bytes[k++] = (byte) color;
+            }
+        }
+
+        private byte[] apply(int type) {
+            byte[] row = this.filtered[type];
+            row[0] = (byte) type;
+            byte[] raw = this.raw;
+            byte[] above = this.above;
+            for (int i = 0; i < raw.length; i++) {
+                int a = i >= 3 ? raw[i - 3] & 0xFF : 0;
+                int b = above[i] & 0xFF;
+                int c = i >= 3 ? above[i - 3] & 0xFF : 0;
+                int predictor;
+                switch (type) {
+                case FILTER_SUB:
+                    predictor = a;
+                    break;
+                case FILTER_UP:
+                    predictor = b;
+                    break;
+                case FILTER_AVERAGE:
+                    predictor = (a + b) >>> 1;
+                    break;
+                case FILTER_PAETH:
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    predictor = pa <= pb && pa <= pc ? a : (pb <= pc ? b : c);
+                    break;
+                default:
+                    predictor = 0;
+                }
+                row[i + 1] = (byte) (raw[i] - predictor);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * Collects the compressed image data and writes it as IDAT chunks
+     */
+    private class ChunkOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size = 0;
+
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, this.buffer.length - this.size);
+                System.arraycopy(b, off, this.buffer, this.size, n);
+                this.size += n;
+                off += n;
+                len -= n;
+                if (this.size == this.buffer.length)
+                    this.flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            if (this.size > 0)
+                writeChunk(out, "IDAT", this.buffer, this.size);
+            this.size = 0;
+        }
+
+        public void close() throws IOException {
+            this.flush();
+        }
+    }
+}
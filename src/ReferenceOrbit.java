@@ -0,0 +1,195 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * The orbit of a reference point C, computed with arbitrary precision. Pixels
+ * c = C + dc of a deep zoom are iterated against this orbit (perturbation
+ * theory): only the difference dz between the sequence of the pixel and the
+ * reference orbit Z is iterated.
+ *
+ * dz(n+1) = 2 * Z(n) * dz(n) + dz(n)^2 + dc
+ *
+ * The differences are small enough to be stored in doubles even if the pixels
+ * are much closer together than the precision of a double allows.
+ */
+class ReferenceOrbit {
+    private static final double SERIES_TOLERANCE = 1E-3;
+
+    private double[] re; // Real parts of Z(0) ... Z(length - 1)
+    private double[] im; // Imaginary parts of Z(0) ... Z(length - 1)
+    private final int length;
+    private final double escape;
+
+    /**
+     * Coefficients of the series approximation dz(skipped) = A * dc + B * dc^2 +
+     * C * dc^3
+     */
+    private int skipped = 0;
+    private double aRe;
+    private double aIm;
+    private double bRe;
+    private double bIm;
+    private double cRe;
+    private double cIm;
+
+    /**
+     * @param cRe  real part of the reference point
+     * @param cIm  imaginary part of the reference point
+     * @param nMax maximum number of iterations
+     * @param mc   precision of the reference orbit
+     */
+    ReferenceOrbit(BigDecimal cRe, BigDecimal cIm, int nMax, MathContext mc) {
+        this.re = new double[Math.min(nMax + 1, 1024)];
+        this.im = new double[this.re.length];
+        this.escape = Mandelbrot.ESCAPE_RADIUS * Mandelbrot.ESCAPE_RADIUS;
+
+        BigDecimal two = BigDecimal.valueOf(2);
+        BigDecimal zRe = BigDecimal.ZERO;
+        BigDecimal zIm = BigDecimal.ZERO;
+        int n = 0;
+        while (n < nMax) {
+            BigDecimal sqrZRe = zRe.multiply(zRe, mc).subtract(zIm.multiply(zIm, mc), mc);
+            BigDecimal sqrZIm = two.multiply(zRe, mc).multiply(zIm, mc);
+            zRe = sqrZRe.add(cRe, mc);
+            zIm = sqrZIm.add(cIm, mc);
+            n++;
+            if (n == this.re.length) {
+                this.re = Arrays.copyOf(this.re, Math.min(nMax + 1, 2 * n));
+                this.im = Arrays.copyOf(this.im, this.re.length);
+            }
+            this.re[n] = zRe.doubleValue();
+            this.im[n] = zIm.doubleValue();
+            if (this.re[n] * this.re[n] + this.im[n] * this.im[n] > this.escape)
+                break;
+        }
+        this.length = n + 1;
+    }
+
+    /**
+     * @return number of elements of the reference orbit (including Z(0) = 0)
+     */
+    int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return number of iterations that are skipped for every pixel
+     */
+    int getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * This method computes the coefficients of the series approximation as long
+     * as the third order term stays small compared to the second order term for
+     * every pixel with |dc| <= maxDelta, and no such pixel can escape or move
+     * away from the reference orbit. All pixels then start iterating at the last
+     * iteration for which this holds.
+     */
+    void approximateSeries(double maxDelta) {
+        double aRe = 0, aIm = 0, bRe = 0, bIm = 0, cRe = 0, cIm = 0;
+        for (int n = 0; n < this.length - 2; n++) {
+            double zRe = this.re[n];
+            double zIm = this.im[n];
+            // A' = 2ZA + 1, B' = 2ZB + A^2, C' = 2ZC + 2AB
+            double nextARe = 2 * (zRe * aRe - zIm * aIm) + 1;
+            double nextAIm = 2 * (zRe * aIm + zIm * aRe);
+            double nextBRe = 2 * (zRe * bRe - zIm * bIm) + aRe * aRe - aIm * aIm;
+            double nextBIm = 2 * (zRe * bIm + zIm * bRe) + 2 * aRe * aIm;
+            double nextCRe = 2 * (zRe * cRe - zIm * cIm) + 2 * (aRe * bRe - aIm * bIm);
+            double nextCIm = 2 * (zRe * cIm + zIm * cRe) + 2 * (aRe * bIm + aIm * bRe);
+
+            // the third order term must be small compared to the second order term
+            double absA = Math.hypot(nextARe, nextAIm);
+            double absB = Math.hypot(nextBRe, nextBIm);
+            double absC = Math.hypot(nextCRe, nextCIm);
+            if (!Double.isFinite(absC) || absC * maxDelta >= SERIES_TOLERANCE * absB)
+                break;
+
+            // no pixel may escape or be rebased during the skipped iterations
+            double maxDz = (absA + (absB + absC * maxDelta) * maxDelta) * maxDelta;
+            double absZ = Math.hypot(this.re[n + 1], this.im[n + 1]);
+            if (2 * maxDz >= absZ || absZ + maxDz > Mandelbrot.ESCAPE_RADIUS)
+                break;
+
+            aRe = nextARe;
+            aIm = nextAIm;
+            bRe = nextBRe;
+            bIm = nextBIm;
+            cRe = nextCRe;
+            cIm = nextCIm;
+            this.skipped = n + 1;
+        }
+        this.aRe = aRe;
+        this.aIm = aIm;
+        this.bRe = bRe;
+        this.bIm = bIm;
+        this.cRe = cRe;
+        this.cIm = cIm;
+    }
+
+    /**
+     * This method iterates a pixel against the reference orbit. Whenever the
+     * sequence of the pixel comes closer to zero than to the reference orbit, or
+     * the reference orbit ends, the pixel is rebased onto the start of the orbit
+     * (dz = z, Z = Z(0) = 0). This avoids the precision loss (glitches) of pixels
+     * that leave the reference orbit.
+     *
+     * @param dcRe real part of the distance of the pixel to the reference point
+     * @param dcIm imaginary part of the distance of the pixel to the reference
+     *             point
+     * @return number of iterations, as in Mandelbrot.iterate()
+     */
+    int iterate(double dcRe, double dcIm, int nMax) {
+        return this.iterate(dcRe, dcIm, nMax, null, 0);
+    }
+
+    /**
+     * Same as above, but if smooth is not null the fractional part of the number
+     * of iterations of a diverging pixel is stored at the index.
+     */
+    int iterate(double dcRe, double dcIm, int nMax, float[] smooth, int index) {
+        int n = 0;
+        int m = 0;
+        double dzRe = 0.0D;
+        double dzIm = 0.0D;
+        if (this.skipped > 0) {
+            double dc2Re = dcRe * dcRe - dcIm * dcIm;
+            double dc2Im = 2 * dcRe * dcIm;
+            double dc3Re = dc2Re * dcRe - dc2Im * dcIm;
+            double dc3Im = dc2Re * dcIm + dc2Im * dcRe;
+            dzRe = this.aRe * dcRe - this.aIm * dcIm + this.bRe * dc2Re - this.bIm * dc2Im + this.cRe * dc3Re
+                    - this.cIm * dc3Im;
+            dzIm = this.aRe * dcIm + this.aIm * dcRe + this.bRe * dc2Im + this.bIm * dc2Re + this.cRe * dc3Im
+                    + this.cIm * dc3Re;
+            n = this.skipped;
+            m = this.skipped;
+        }
+
+        for (; n < nMax; ++n) {
+            double tRe = 2 * this.re[m] + dzRe;
+            double tIm = 2 * this.im[m] + dzIm;
+            double nextRe = tRe * dzRe - tIm * dzIm + dcRe;
+            double nextIm = tRe * dzIm + tIm * dzRe + dcIm;
+            dzRe = nextRe;
+            dzIm = nextIm;
+            m++;
+
+            double zRe = this.re[m] + dzRe;
+            double zIm = this.im[m] + dzIm;
+            double abs = zRe * zRe + zIm * zIm;
+            if (abs > this.escape) {
+                if (smooth != null)
+                    smooth[index] = Mandelbrot.getSmoothFraction(zRe, zIm, this.re[1] + dcRe, this.im[1] + dcIm);
+                return n;
+            }
+            if (abs < dzRe * dzRe + dzIm * dzIm || m == this.length - 1) {
+                dzRe = zRe;
+                dzIm = zIm;
+                m = 0;
+            }
+        }
+        return nMax;
+    }
+}
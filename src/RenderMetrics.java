@@ -0,0 +1,291 @@
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Measurements of a single render: the time and number of iterations of every
+ * tile and of every worker thread, a histogram of the escape counts and the
+ * time of the steps after the build (palette, coloring, encoding).
+ *
+ * The same steps are also reported as JFR events (category "Mandelbrot"), which
+ * cost next to nothing unless a flight recording is running, so they are
+ * emitted by every render.
+ */
+class RenderMetrics {
+    private static final int HISTOGRAM_BUCKETS = 32; // Bucket k holds the escape counts from 2^(k-1) to 2^k - 1
+
+    private final int fullWidth;
+    private final int fullHeight;
+    private final int areaWidth;
+    private final int areaHeight;
+    private final int nMax;
+    private final long startTime = System.nanoTime();
+
+    private final ConcurrentLinkedQueue<Tile> tiles = new ConcurrentLinkedQueue<>();
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    private long interiorPixels = 0;
+    private volatile long buildTime = -1;
+    private volatile long paletteTime = -1;
+    private volatile long coloringTime = -1;
+    private volatile long encodeTime = -1;
+
+    RenderMetrics(int fullWidth, int fullHeight, int areaWidth, int areaHeight, int nMax, long paletteTime) {
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+        this.areaWidth = areaWidth;
+        this.areaHeight = areaHeight;
+        this.nMax = nMax;
+        this.paletteTime = paletteTime;
+    }
+
+    /**
+     * This method records a rectangle of the area that has been computed by the
+     * current thread.
+     */
+    void addTile(int xBegin, int yBegin, int xEnd, int yEnd, long time, long iterations) {
+        Tile tile = new Tile();
+        tile.x = xBegin;
+        tile.y = yBegin;
+        tile.width = xEnd - xBegin;
+        tile.height = yEnd - yBegin;
+        tile.time = time;
+        tile.iterations = iterations;
+        tile.worker = Thread.currentThread().getName();
+        this.tiles.add(tile);
+        this.addWork((long) tile.width * tile.height, time, iterations);
+    }
+
+    /**
+     * This method records pixels that have been computed by the current thread
+     * but do not form a rectangle.
+     */
+    void addWork(long pixels, long time, long iterations) {
+        Worker worker = this.workers.computeIfAbsent(Thread.currentThread().getName(), (name) -> new Worker());
+        synchronized (worker) {
+            worker.tasks++;
+            worker.pixels += pixels;
+            worker.time += time;
+            worker.iterations += iterations;
+        }
+    }
+
+    /**
+     * This method adds the pixels data[begin] to data[end - 1] to the histogram.
+     */
+    void addToHistogram(int[] data, int begin, int end) {
+        long[] counts = new long[HISTOGRAM_BUCKETS];
+        long interior = 0;
+        for (int i = begin; i < end; i++) {
+            int n = data[i];
+            if (n >= this.nMax)
+                interior++;
+            else
+                counts[32 - Integer.numberOfLeadingZeros(n)]++;
+        }
+        synchronized (this.histogram) {
+            for (int k = 0; k < HISTOGRAM_BUCKETS; k++)
+                this.histogram[k] += counts[k];
+            this.interiorPixels += interior;
+        }
+    }
+
+    void finishBuild() {
+        this.buildTime = System.nanoTime() - this.startTime;
+    }
+
+    synchronized void addColoringTime(long time) {
+        this.coloringTime = Math.max(0, this.coloringTime) + time;
+    }
+
+    synchronized void addEncodeTime(long time) {
+        this.encodeTime = Math.max(0, this.encodeTime) + time;
+    }
+
+    /**
+     * @return the time in ns from the start of the render until the iteration
+     *         data was complete or -1 if it is not complete
+     */
+    long getBuildTime() {
+        return this.buildTime;
+    }
+
+    /**
+     * @return the number of iterations of all computed pixels
+     */
+    long getTotalIterations() {
+        long total = 0;
+        for (Worker worker : this.workers.values())
+            total += worker.iterations;
+        return total;
+    }
+
+    /**
+     * @return the ratio between the busiest worker and the mean of all workers
+     *         (1.0 if the work was spread evenly, 0.0 if nothing was computed)
+     */
+    double getLoadImbalance() {
+        long max = 0;
+        long sum = 0;
+        for (Worker worker : this.workers.values()) {
+            max = Math.max(max, worker.time);
+            sum += worker.time;
+        }
+        if (sum == 0)
+            return 0.0D;
+        return (double) max / ((double) sum / (double) this.workers.size());
+    }
+
+    int getWorkerCount() {
+        return this.workers.size();
+    }
+
+    /**
+     * This method writes all measurements as a JSON file. Times are given in
+     * nanoseconds, -1 stands for a step that did not take place.
+     */
+    void writeJSON(String path) throws FileNotFoundException, UnsupportedEncodingException {
+        PrintWriter writer = new PrintWriter(path, "UTF-8");
+        writer.println("{");
+        writer.println("  \"image\": { \"width\": " + this.fullWidth + ", \"height\": " + this.fullHeight + " },");
+        writer.println("  \"area\": { \"width\": " + this.areaWidth + ", \"height\": " + this.areaHeight + " },");
+        writer.println("  \"nMax\": " + this.nMax + ",");
+        writer.println("  \"phases\": { \"build\": " + this.buildTime + ", \"palette\": " + this.paletteTime
+                + ", \"coloring\": " + this.coloringTime + ", \"encode\": " + this.encodeTime + " },");
+        writer.println("  \"totalIterations\": " + this.getTotalIterations() + ",");
+        writer.println("  \"loadImbalance\": " + this.getLoadImbalance() + ",");
+
+        writer.println("  \"histogram\": {");
+        writer.println("    \"interior\": " + this.interiorPixels + ",");
+        writer.println("    \"buckets\": [");
+        List<String> buckets = new ArrayList<>();
+        for (int k = 0; k < HISTOGRAM_BUCKETS; k++) {
+            if (this.histogram[k] == 0)
+                continue;
+            long min = k == 0 ? 0 : 1L << (k - 1);
+            long max = k == 0 ? 0 : (1L << k) - 1;
+            buckets.add("      { \"min\": " + min + ", \"max\": " + max + ", \"pixels\": " + this.histogram[k] + " }");
+        }
+        writer.println(String.join(",\n", buckets));
+        writer.println("    ]");
+        writer.println("  },");
+
+        writer.println("  \"workers\": [");
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Worker> entry : new TreeMap<>(this.workers).entrySet()) {
+            Worker worker = entry.getValue();
+            lines.add("    { \"name\": \"" + escape(entry.getKey()) + "\", \"tasks\": " + worker.tasks + ", \"pixels\": "
+                    + worker.pixels + ", \"iterations\": " + worker.iterations + ", \"time\": " + worker.time
+                    + " }");
+        }
+        writer.println(String.join(",\n", lines));
+        writer.println("  ],");
+
+        writer.println("  \"tiles\": [");
+        lines.clear();
+        for (Tile tile : this.tiles)
+            lines.add("    { \"x\": " + tile.x + ", \"y\": " + tile.y + ", \"width\": " + tile.width + ", \"height\": "
+                    + tile.height + ", \"iterations\": " + tile.iterations + ", \"time\": " + tile.time
+                    + ", \"worker\": \"" + escape(tile.worker) + "\" }");
+        writer.println(String.join(",\n", lines));
+        writer.println("  ]");
+        writer.println("}");
+        writer.close();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static class Tile {
+        private int x;
+        private int y;
+        private int width;
+        private int height;
+        private long time;
+        private long iterations;
+        private String worker;
+    }
+
+    private static class Worker {
+        private long tasks;
+        private long pixels;
+        private long time;
+        private long iterations;
+    }
+
+    @Name("mandelbrot.Tile")
+    @Label("Tile")
+    @Description("A rectangle of the area that has been computed")
+    @Category("Mandelbrot")
+    @StackTrace(false)
+    static class TileEvent extends Event {
+        @Label("X")
+        int x;
+        @Label("Y")
+        int y;
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Iterations")
+        long iterations;
+    }
+
+    @Name("mandelbrot.Build")
+    @Label("Build")
+    @Description("Computation of the iteration data of a Mandelbrot object")
+    @Category("Mandelbrot")
+    @StackTrace(false)
+    static class BuildEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Max Iterations")
+        int nMax;
+        @Label("Reused Pixels")
+        int reusedPixels;
+    }
+
+    @Name("mandelbrot.Coloring")
+    @Label("Coloring")
+    @Description("Mapping of the iteration data to colors and compositing with the background")
+    @Category("Mandelbrot")
+    @StackTrace(false)
+    static class ColoringEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+    }
+
+    @Name("mandelbrot.Encode")
+    @Label("Encode")
+    @Description("Encoding of an image and writing it to a file")
+    @Category("Mandelbrot")
+    @StackTrace(false)
+    static class EncodeEvent extends Event {
+        @Label("Format")
+        String format;
+        @Label("Path")
+        String path;
+        @Label("RGB Data")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,550 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves full renders and map tiles over HTTP on the loopback interface, so a
+ * web explorer can keep one warm process instead of starting the application
+ * for every image:
+ *
+ * GET /render?width=..&height=..[&minRe=..&minIm=..&maxRe=..&maxIm=..&nMax=..&format=png]
+ * GET /tiles/z/x/y.png[?size=256]
+ * GET /stats
+ *
+ * Every connection is handled on a thread of its own, which mostly waits,
+ * while the computation and the encoding run on the bounded render pool.
+ * Encoded images and built Mandelbrot objects are kept in two LRU caches that
+ * are bounded by their size in bytes, and tiles take over the pixels of their
+ * parent tile if it is cached. Identical requests that arrive while an image is
+ * computed wait for the same computation, which is aborted as soon as all of
+ * their clients have disconnected.
+ */
+class RenderServer {
+    private static final int MAX_CONNECTIONS = 64; // Number of requests that are handled at the same time
+    private static final int POLL_INTERVAL = 50; // ms between two checks whether a waiting client is still connected
+    private static final int MAX_HEADER_LENGTH = 8192;
+    private static final long MAX_PIXELS = 1L << 26; // Largest image that is rendered for a request
+    private static final int DEFAULT_TILE_SIZE = 256;
+    private static final int MAX_TILE_LEVEL = 30;
+
+    private final Map<String, Object> config;
+    private final Executor executor;
+    private final Mandelbrot.Executable<String> onRequest;
+    private final ResultCache<byte[]> images; // Encoded images by the key of their view and their format
+    private final ResultCache<Mandelbrot> builds; // Built Mandelbrot objects by the key of their view
+    private final Map<String, Job> jobs = new HashMap<>(); // Computations in progress by the key of their image
+    private final Map<Integer, Mandelbrot> tileRoots = new ConcurrentHashMap<>(); // Level 0 tiles by their size
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong imageHits = new AtomicLong();
+    private final AtomicLong buildHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+
+    /**
+     * @param config    configuration of the area and the options, requests may
+     *                  override the area and nMax
+     * @param executor  executor that computes and encodes the images
+     * @param cacheSize maximum size in bytes of all cached images and iteration
+     *                  data, half of it for each cache
+     * @param onRequest called with a line about every request that has been
+     *                  answered
+     */
+    RenderServer(Map<String, Object> config, Executor executor, long cacheSize,
+            Mandelbrot.Executable<String> onRequest) throws Mandelbrot.MandelbrotConfigException {
+        this.config = new HashMap<>(config);
+        this.executor = executor;
+        this.onRequest = onRequest;
+        this.images = new ResultCache<>(cacheSize / 2);
+        this.builds = new ResultCache<>(cacheSize - cacheSize / 2);
+        new Mandelbrot(this.config, 1, 1);
+    }
+
+    /**
+     * This method starts to accept connections on the loopback interface.
+     *
+     * @param port port to listen on, 0 for any free port
+     */
+    void start(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, MAX_CONNECTIONS, InetAddress.getLoopbackAddress());
+        this.connections = Executors.newFixedThreadPool(MAX_CONNECTIONS);
+        Thread acceptor = new Thread(this::accept, "render-server");
+        acceptor.start();
+    }
+
+    void stop() throws IOException {
+        this.serverSocket.close();
+        this.connections.shutdownNow();
+    }
+
+    int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                this.connections.execute(() -> this.handle(socket));
+            } catch (IOException e) {
+                // closed by stop()
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        long start = System.nanoTime();
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String requestLine = readHeader(in);
+            if (requestLine == null)
+                return;
+            this.requests.incrementAndGet();
+            String[] parts = requestLine.split(" ");
+            Response response;
+            if (parts.length < 2) {
+                response = Response.error(400, "Bad Request", "Malformed request line");
+            } else if (!parts[0].equals("GET")) {
+                response = Response.error(405, "Method Not Allowed", "Only GET requests are supported");
+            } else {
+                try {
+                    response = this.route(parts[1], socket, in);
+                } catch (IllegalArgumentException | Mandelbrot.MandelbrotConfigException e) {
+                    response = Response.error(400, "Bad Request", e.getMessage());
+                }
+            }
+            if (response == null) {
+                this.onRequest.run(requestLine + " -> client disconnected, "
+                        + (System.nanoTime() - start) / 1000000L + " ms");
+                return;
+            }
+            response.write(out);
+            this.onRequest.run(requestLine + " -> " + response.status + " (" + response.source + "), "
+                    + (System.nanoTime() - start) / 1000000L + " ms");
+        } catch (IOException e) {
+            // the client has closed the connection
+        }
+    }
+
+    /**
+     * @return the response to a request or null if the client has disconnected
+     */
+    private Response route(String target, Socket socket, InputStream in) throws IOException {
+        int q = target.indexOf('?');
+        String path = q < 0 ? target : target.substring(0, q);
+        Map<String, String> query = parseQuery(q < 0 ? "" : target.substring(q + 1));
+
+        if (path.equals("/stats"))
+            return new Response(200, "OK", "application/json", this.getStats().getBytes(StandardCharsets.UTF_8),
+                    "stats");
+
+        if (path.equals("/render")) {
+            int width = parseInt(query, "width", -1);
+            int height = parseInt(query, "height", -1);
+            if (width <= 0 || height <= 0 || (long) width * height > MAX_PIXELS)
+                throw new IllegalArgumentException("The width and height must be given and the image must not have"
+                        + " more than " + MAX_PIXELS + " pixels");
+            Map<String, Object> viewConfig = new HashMap<>(this.config);
+            for (String key : new String[] { "minRe", "minIm", "maxRe", "maxIm" })
+                if (query.containsKey(key))
+                    viewConfig.put(key, query.get(key));
+            if (query.containsKey("nMax"))
+                viewConfig.put("nMax", parseInt(query, "nMax", 0));
+            Mandelbrot view = new Mandelbrot(viewConfig, width, height);
+            return this.serveImage(view, null, getFormat(query.getOrDefault("format", "png")), socket, in);
+        }
+
+        if (path.startsWith("/tiles/")) {
+            String[] coordinates = path.substring("/tiles/".length()).split("/");
+            int dot = coordinates.length == 3 ? coordinates[2].lastIndexOf('.') : -1;
+            if (dot < 0)
+                return Response.error(404, "Not Found", "Tiles are requested as /tiles/z/x/y.png");
+            int level, x, y;
+            try {
+                level = Integer.parseInt(coordinates[0]);
+                x = Integer.parseInt(coordinates[1]);
+                y = Integer.parseInt(coordinates[2].substring(0, dot));
+            } catch (NumberFormatException e) {
+                return Response.error(404, "Not Found", "Tiles are requested as /tiles/z/x/y.png");
+            }
+            int size = parseInt(query, "size", DEFAULT_TILE_SIZE);
+            if (level < 0 || level > MAX_TILE_LEVEL || x < 0 || y < 0 || x >= 1 << level || y >= 1 << level)
+                throw new IllegalArgumentException("There is no tile " + level + "/" + x + "/" + y);
+            if (size <= 0 || (long) size * size > MAX_PIXELS)
+                throw new IllegalArgumentException("The tile size is invalid");
+            Mandelbrot root = this.tileRoots.computeIfAbsent(size,
+                    (edge) -> new Mandelbrot(this.config, edge, edge).extendAreaToImageSize());
+            Mandelbrot tile = root.getTile(level, x, y, size);
+            String parentKey = level > 0 ? getKey(root.getTile(level - 1, x / 2, y / 2, size)) : null;
+            return this.serveImage(tile, parentKey, getFormat(coordinates[2].substring(dot + 1)), socket, in);
+        }
+
+        return Response.error(404, "Not Found", "Unknown path " + path);
+    }
+
+    /**
+     * This method answers a request for an image from the cache, by waiting for
+     * an identical request that is in progress or by computing it.
+     *
+     * @param parentKey key of a view whose iteration data the view can take over,
+     *                  may be null
+     * @return the response or null if the client has disconnected
+     */
+    private Response serveImage(Mandelbrot view, String parentKey, String format, Socket socket, InputStream in)
+            throws IOException {
+        view.useProgressiveRendering = false;
+        String key = getKey(view);
+        String imageKey = key + "." + format;
+        byte[] image = this.images.get(imageKey);
+        if (image != null) {
+            this.imageHits.incrementAndGet();
+            return new Response(200, "OK", getContentType(format), image, "cached image");
+        }
+
+        Job job;
+        boolean isNew = false;
+        synchronized (this.jobs) {
+            job = this.jobs.get(imageKey);
+            if (job == null) {
+                job = new Job(view);
+                this.jobs.put(imageKey, job);
+                isNew = true;
+            } else {
+                this.coalesced.incrementAndGet();
+            }
+            job.waiters++;
+        }
+        String source = isNew ? "computed" : "coalesced";
+        if (isNew)
+            source = this.compute(job, imageKey, key, parentKey, format);
+
+        try {
+            while (true) {
+                try {
+                    image = job.result.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    return new Response(200, "OK", getContentType(format), image, source);
+                } catch (TimeoutException e) {
+                    if (isDisconnected(socket, in))
+                        return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (CancellationException e) {
+            return Response.error(503, "Service Unavailable", "The computation has been cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof CancellationException)
+                return Response.error(503, "Service Unavailable", "The computation has been cancelled");
+            if (cause instanceof OutOfMemoryError)
+                return Response.error(503, "Service Unavailable", "Not enough memory for the image");
+            return Response.error(500, "Internal Server Error", String.valueOf(cause));
+        } finally {
+            this.leave(job, imageKey);
+        }
+    }
+
+    /**
+     * This method starts the computation of a job: it encodes a cached build or
+     * renders the view first.
+     *
+     * @return where the iteration data comes from
+     */
+    private String compute(Job job, String imageKey, String key, String parentKey, String format) {
+        CompletableFuture<Mandelbrot> built;
+        String source;
+        Mandelbrot cached = this.builds.get(key);
+        if (cached != null) {
+            this.buildHits.incrementAndGet();
+            built = CompletableFuture.completedFuture(cached);
+            source = "cached iteration data";
+        } else {
+            Mandelbrot parent = parentKey != null ? this.builds.get(parentKey) : null;
+            if (parent != null)
+                job.view.reuse(parent);
+            this.computed.incrementAndGet();
+            try {
+                built = job.view.render(this.executor).thenApply((data) -> {
+                    this.builds.put(key, job.view, getWeight(job.view));
+                    return job.view;
+                });
+            } catch (RuntimeException | OutOfMemoryError e) {
+                built = CompletableFuture.failedFuture(e);
+            }
+            source = parent != null ? "computed from the parent tile" : "computed";
+        }
+        built.thenApplyAsync((mandelbrot) -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                mandelbrot.exportImage(out, format);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }, this.executor).whenComplete((image, err) -> {
+            synchronized (this.jobs) {
+                this.jobs.remove(imageKey, job);
+            }
+            if (err != null) {
+                job.result.completeExceptionally(err);
+            } else {
+                this.images.put(imageKey, image, image.length);
+                job.result.complete(image);
+            }
+        });
+        return source;
+    }
+
+    /**
+     * This method is called when a client no longer waits for a job. The
+     * computation is aborted if no other client waits for it.
+     */
+    private void leave(Job job, String imageKey) {
+        synchronized (this.jobs) {
+            job.waiters--;
+            if (job.waiters > 0 || job.result.isDone())
+                return;
+            this.jobs.remove(imageKey, job);
+        }
+        this.cancelled.incrementAndGet();
+        job.view.abort();
+        job.result.cancel(false);
+    }
+
+    /**
+     * @return the number of requests, cache hits and cached entries as JSON
+     */
+    String getStats() {
+        return "{ \"requests\": " + this.requests.get() + ", \"imageHits\": " + this.imageHits.get()
+                + ", \"buildHits\": " + this.buildHits.get() + ", \"coalesced\": " + this.coalesced.get()
+                + ", \"computed\": " + this.computed.get() + ", \"cancelled\": " + this.cancelled.get()
+                + ", \"cachedImages\": " + this.images.count() + ", \"imageCacheBytes\": " + this.images.getSize()
+                + ", \"cachedBuilds\": " + this.builds.count() + ", \"buildCacheBytes\": " + this.builds.getSize()
+                + " }";
+    }
+
+    /**
+     * This method peeks at the input of a connection without consuming it, the
+     * buffered stream of the request is reset to the byte it has read. The end
+     * of the input is no disconnect, because a client may shut down its output
+     * after the request (half-close) and still wait for the response.
+     *
+     * @return true if the connection has been reset or closed
+     */
+    private static boolean isDisconnected(Socket socket, InputStream in) throws IOException {
+        if (socket.isClosed())
+            return true;
+        socket.setSoTimeout(1);
+        in.mark(1);
+        try {
+            if (in.read() >= 0)
+                in.reset();
+            return false;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (SocketException e) {
+            return true;
+        }
+    }
+
+    /**
+     * This method reads the header of a request.
+     *
+     * @return the request line or null if the connection has been closed
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            header.append((char) c);
+            if (header.length() > MAX_HEADER_LENGTH)
+                throw new IOException("The header of the request is too long");
+            int length = header.length();
+            if (length >= 4 && header.substring(length - 4).equals("\r\n\r\n"))
+                break;
+            if (length >= 2 && header.substring(length - 2).equals("\n\n"))
+                break;
+        }
+        if (c < 0)
+            return null;
+        int end = header.indexOf("\n");
+        return header.substring(0, end).trim();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty())
+                continue;
+            int eq = parameter.indexOf('=');
+            String name = eq < 0 ? parameter : parameter.substring(0, eq);
+            String value = eq < 0 ? "" : parameter.substring(eq + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int parseInt(Map<String, String> query, String name, int defaultValue) {
+        if (!query.containsKey(name))
+            return defaultValue;
+        try {
+            return Integer.parseInt(query.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + query.get(name) + "' is not a valid value of " + name);
+        }
+    }
+
+    private static String getFormat(String extension) {
+        String format = Mandelbrot.getImageFormat("image." + extension);
+        if (!format.equals(extension.toLowerCase()) && !(format.equals("jpg") && extension.equalsIgnoreCase("jpeg")))
+            throw new IllegalArgumentException("The image format '" + extension + "' is not supported");
+        return format;
+    }
+
+    private static String getContentType(String format) {
+        if (format.equals("jpg"))
+            return "image/jpeg";
+        if (format.equals("ppm"))
+            return "image/x-portable-pixmap";
+        return "image/" + format;
+    }
+
+    /**
+     * @return a key that is equal for two objects with the same image size, area
+     *         and nMax
+     */
+    private static String getKey(Mandelbrot view) {
+        return view.getFullWidth() + "x" + view.getFullHeight() + "/"
+                + view.getExactMinRe().stripTrailingZeros().toPlainString() + "/"
+                + view.getExactMinIm().stripTrailingZeros().toPlainString() + "/"
+                + view.getExactMaxRe().stripTrailingZeros().toPlainString() + "/"
+                + view.getExactMaxIm().stripTrailingZeros().toPlainString() + "/" + view.getNMax();
+    }
+
+    /**
+     * @return the approximate size in bytes of a built object: the iteration data
+     *         and the full image that has been encoded
+     */
+    private static long getWeight(Mandelbrot view) {
+        long area = (long) view.getAreaWidth() * view.getAreaHeight();
+        long full = (long) view.getFullWidth() * view.getFullHeight();
+        return 4L * area * (view.useSmoothColoring ? 2 : 1) + 4L * full;
+    }
+
+    /**
+     * A computation that one or more clients wait for
+     */
+    private static class Job {
+        private final Mandelbrot view;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private int waiters = 0; // guarded by RenderServer.jobs
+
+        private Job(Mandelbrot view) {
+            this.view = view;
+        }
+    }
+
+    private static class Response {
+        private final int status;
+        private final String reason;
+        private final String contentType;
+        private final byte[] body;
+        private final String source;
+
+        private Response(int status, String reason, String contentType, byte[] body, String source) {
+            this.status = status;
+            this.reason = reason;
+            this.contentType = contentType;
+            this.body = body;
+            this.source = source;
+        }
+
+        private static Response error(int status, String reason, String message) {
+            return new Response(status, reason, "text/plain; charset=utf-8",
+                    (message + "\n").getBytes(StandardCharsets.UTF_8), reason);
+        }
+
+        private void write(OutputStream out) throws IOException {
+            String header = "HTTP/1.1 " + this.status + " " + this.reason + "\r\nContent-Type: " + this.contentType
+                    + "\r\nContent-Length: " + this.body.length + "\r\nConnection: close\r\n\r\n";
+            out.write(header.getBytes(StandardCharsets.US_ASCII));
+            out.write(this.body);
+            out.flush();
+        }
+    }
+
+    /**
+     * A map whose least recently used entries are removed as soon as the sizes
+     * of all entries add up to more than a maximum size
+     */
+    private static class ResultCache<V> {
+        private final long maxSize;
+        private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<String, Long> weights = new HashMap<>();
+        private long size = 0;
+
+        private ResultCache(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        synchronized V get(String key) {
+            return this.entries.get(key);
+        }
+
+        synchronized void put(String key, V value, long weight) {
+            if (weight > this.maxSize)
+                return;
+            if (this.entries.put(key, value) != null)
+                this.size -= this.weights.get(key);
+            this.weights.put(key, weight);
+            this.size += weight;
+            Iterator<Map.Entry<String, V>> eldest = this.entries.entrySet().iterator();
+            while (this.size > this.maxSize && eldest.hasNext()) {
+                String removed = eldest.next().getKey();
+                eldest.remove();
+                this.size -= this.weights.remove(removed);
+            }
+        }
+
+        synchronized int count() {
+            return this.entries.size();
+        }
+
+        synchronized long getSize() {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * A process that computes strips of rows for a coordinator (see
+ * DistributedRenderer) on all of its cores. The Mandelbrot objects of the last
+ * configurations are kept, so the reference orbit of a deep zoom is only
+ * computed once even if the coordinator connects again.
+ */
+class RenderWorker {
+    private static final int CACHE_SIZE = 4; // Number of configurations that are kept
+
+    private final Mandelbrot.Executable<String> onStrip;
+    private final Map<String, Mandelbrot> prepared = new LinkedHashMap<String, Mandelbrot>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, Mandelbrot> eldest) {
+            return this.size() > CACHE_SIZE;
+        }
+    };
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+
+    /**
+     * @param onStrip called with a line about every strip that has been computed
+     */
+    RenderWorker(Mandelbrot.Executable<String> onStrip) {
+        this.onStrip = onStrip;
+    }
+
+    /**
+     * This method starts to accept connections of coordinators.
+     *
+     * @param port    port to listen on, 0 for any free port
+     * @param address address to listen on, null for the loopback interface
+     */
+    void start(int port, InetAddress address) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, address != null ? address : InetAddress.getLoopbackAddress());
+        this.connections = Executors.newCachedThreadPool();
+        new Thread(this::accept, "render-worker").start();
+    }
+
+    void stop() throws IOException {
+        this.serverSocket.close();
+        this.connections.shutdownNow();
+    }
+
+    int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                this.connections.execute(() -> this.handle(socket));
+            } catch (IOException e) {
+                // closed by stop()
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != DistributedRenderer.MAGIC)
+                return;
+            Mandelbrot mandelbrot = null;
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return; // the coordinator is done
+                }
+                if (type == DistributedRenderer.CONFIG) {
+                    int fullWidth = in.readInt();
+                    int fullHeight = in.readInt();
+                    String precision = DistributedRenderer.readText(in);
+                    String config = DistributedRenderer.readText(in);
+                    try {
+                        mandelbrot = this.getMandelbrot(config, fullWidth, fullHeight, precision);
+                        out.writeByte(DistributedRenderer.OK);
+                    } catch (RuntimeException e) {
+                        out.writeByte(DistributedRenderer.ERROR);
+                        DistributedRenderer.writeText(out, String.valueOf(e.getMessage()));
+                    }
+                } else if (type == DistributedRenderer.STRIP) {
+                    int yBegin = in.readInt();
+                    int yEnd = in.readInt();
+                    if (mandelbrot == null || yBegin < 0 || yEnd <= yBegin || yEnd > mandelbrot.getAreaHeight()) {
+                        out.writeByte(DistributedRenderer.ERROR);
+                        DistributedRenderer.writeText(out, "Invalid strip " + yBegin + " to " + yEnd);
+                    } else {
+                        long start = System.nanoTime();
+                        int[] data = mandelbrot.computeRows(yBegin, yEnd);
+                        out.writeByte(DistributedRenderer.OK);
+                        DistributedRenderer.writeRuns(out, data);
+                        this.onStrip.run("> rows " + yBegin + " to " + (yEnd - 1) + " of " + mandelbrot.getAreaWidth()
+                                + "x" + mandelbrot.getAreaHeight() + " computed in "
+                                + (System.nanoTime() - start) / 1000000L + " ms for " + socket.getRemoteSocketAddress());
+                    }
+                } else {
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the coordinator has closed the connection
+        }
+    }
+
+    /**
+     * @return a Mandelbrot object of the configuration that is ready to compute
+     *         rows
+     */
+    private Mandelbrot getMandelbrot(String config, int fullWidth, int fullHeight, String precision) {
+        String key = fullWidth + "x" + fullHeight + ";" + precision + ";" + config;
+        synchronized (this.prepared) {
+            Mandelbrot mandelbrot = this.prepared.get(key);
+            if (mandelbrot != null)
+                return mandelbrot;
+        }
+        Map<String, Object> yamlData = new Yaml()
+                .load(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+        Mandelbrot mandelbrot = new Mandelbrot(yamlData, fullWidth, fullHeight);
+        mandelbrot.precision = precision;
+        mandelbrot.prepareRows();
+        synchronized (this.prepared) {
+            this.prepared.put(key, mandelbrot);
+        }
+        return mandelbrot;
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a pyramid of square PNG tiles in the usual z/x/y directory layout
+ * (level/column/row.png, row 0 at the top). Level 0 is a single tile showing
+ * the whole root area, every further level doubles the number of tiles in both
+ * directions.
+ *
+ * The tiles are visited depth first, so the parent of a tile has usually just
+ * been computed. Built tiles are kept in a bounded cache and every tile takes
+ * over the quarter of its pixels that lie exactly on pixels of its parent.
+ * Tiles whose file exists already are skipped, so an interrupted run can be
+ * resumed.
+ */
+class TilePyramid {
+    private final Mandelbrot root;
+    private final int maxLevel;
+    private final int tileSize;
+    private final File directory;
+    private final Map<String, Mandelbrot> cache;
+    private final AtomicLong tilesWritten = new AtomicLong(); // Counted by the encoding threads
+    private long tilesVisited = 0;
+    private long tilesSkipped = 0;
+    private long pixelsReused = 0;
+
+    /**
+     * @param root      Mandelbrot object whose area is shown by the tile of level
+     *                  0, it should be square
+     * @param maxLevel  highest level that is written
+     * @param tileSize  edge length of a tile in pixels
+     * @param directory directory of the pyramid
+     * @param cacheSize maximum number of built tiles that are kept in memory
+     */
+    TilePyramid(Mandelbrot root, int maxLevel, int tileSize, File directory, int cacheSize) {
+        this.root = root;
+        this.maxLevel = maxLevel;
+        this.tileSize = tileSize;
+        this.directory = directory;
+        this.cache = new LinkedHashMap<String, Mandelbrot>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Mandelbrot> eldest) {
+                return this.size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return the number of tiles of all levels
+     */
+    long getTileCount() {
+        return ((1L << (2 * (this.maxLevel + 1))) - 1) / 3;
+    }
+
+    long getTilesWritten() {
+        return this.tilesWritten.get();
+    }
+
+    long getTilesSkipped() {
+        return this.tilesSkipped;
+    }
+
+    /**
+     * @return the number of pixels that have been taken over from parent tiles
+     */
+    long getPixelsReused() {
+        return this.pixelsReused;
+    }
+
+    File getTileFile(int level, int x, int y) {
+        return new File(this.directory, level + File.separator + x + File.separator + y + ".png");
+    }
+
+    /**
+     * This method computes all missing tiles one after the other on the executor.
+     * Every tile is written on one of the encoding threads while the next tile is
+     * computed. The first tile that cannot be written stops the run.
+     *
+     * @param executor executor that computes the tiles
+     * @param onTile   called with the number of tiles that have been visited
+     */
+    void run(Executor executor, Mandelbrot.Executable<Long> onTile) throws InterruptedException {
+        int encoders = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ExecutorService encoder = Executors.newFixedThreadPool(encoders);
+        Semaphore slots = new Semaphore(2 * encoders);
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        try {
+            this.visit(0, 0, 0, executor, encoder, slots, written, onTile);
+            CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    private void visit(int level, int x, int y, Executor executor, Executor encoder, Semaphore slots,
+            List<CompletableFuture<Void>> written, Mandelbrot.Executable<Long> onTile) throws InterruptedException {
+        File file = this.getTileFile(level, x, y);
+        if (file.isFile()) {
+            this.tilesSkipped++;
+        } else {
+            Mandelbrot tile = this.root.getTile(level, x, y, this.tileSize);
+            Mandelbrot parent = this.cache.get(key(level - 1, x / 2, y / 2));
+            if (parent != null)
+                tile.reuse(parent);
+            tile.render(executor).join();
+            this.pixelsReused += Math.max(0, tile.getReusedPixels());
+            if (level < this.maxLevel)
+                this.cache.put(key(level, x, y), tile);
+
+            slots.acquire();
+            written.add(CompletableFuture.runAsync(() -> write(tile, file), encoder).whenComplete((v, err) -> {
+                slots.release();
+                if (err == null)
+                    this.tilesWritten.incrementAndGet();
+            }));
+            // finished writes are dropped, a failed one is rethrown
+            written.removeIf(w -> w.isDone() && !w.isCompletedExceptionally());
+            for (CompletableFuture<Void> w : written)
+                if (w.isCompletedExceptionally())
+                    w.join();
+        }
+        onTile.run(++this.tilesVisited);
+
+        if (level == this.maxLevel)
+            return;
+        for (int dy = 0; dy < 2; dy++)
+            for (int dx = 0; dx < 2; dx++)
+                this.visit(level + 1, 2 * x + dx, 2 * y + dy, executor, encoder, slots, written, onTile);
+    }
+
+    /**
+     * This method writes a tile to a temporary file first, so a file that exists
+     * is always complete.
+     */
+    private static void write(Mandelbrot tile, File file) {
+        File parent = file.getParentFile();
+        parent.mkdirs();
+        File temp = new File(parent, file.getName() + ".part.png");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                tile.exportImage(out, "png");
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String key(int level, int x, int y) {
+        return level + "/" + x + "/" + y;
+    }
+}
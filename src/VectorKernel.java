@@ -0,0 +1,103 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This kernel iterates neighboring pixels of a row at once, one pixel per lane
+ * of a DoubleVector. The arithmetic is the same as in Mandelbrot.iterate(), so
+ * both kernels produce the same iteration data.
+ * 
+ * The loop keeps no mask from one iteration to the next and uses every mask
+ * only once, otherwise the JIT allocates boxed vectors in every iteration. The
+ * state of a lane is part of its count instead: lanes that are known not to
+ * diverge get INSIDE added, and since |z| only grows once it exceeds the
+ * escape radius, a diverged lane is simply no longer counted.
+ * 
+ * It needs the incubator module (--add-modules jdk.incubator.vector) and is
+ * only loaded if that module is present.
+ */
+class VectorKernel implements Mandelbrot.RowKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final DoubleVector IOTA = DoubleVector.zero(SPECIES).addIndex(1);
+    private static final DoubleVector ZERO = DoubleVector.zero(SPECIES);
+    private static final DoubleVector ONE = DoubleVector.broadcast(SPECIES, 1.0D);
+    private static final DoubleVector INFINITY = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+    private static final DoubleVector QUARTER = DoubleVector.broadcast(SPECIES, 0.25D);
+    private static final double INSIDE = 1E12; // Added to the count of a lane that does not diverge
+    private static final DoubleVector INSIDE_VECTOR = DoubleVector.broadcast(SPECIES, INSIDE);
+
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    public void iterateRow(Mandelbrot mandelbrot, double s, double cIm, int xBegin, int xEnd, int[] out, int offset) {
+        final int lanes = SPECIES.length();
+        final int nMax = mandelbrot.getNMax();
+        final double minRe = mandelbrot.getMinRe();
+        final double escape = Mandelbrot.ESCAPE_RADIUS * Mandelbrot.ESCAPE_RADIUS;
+        // a tolerance below 0 is never met, so the periodicity check is off
+        final double tolerance = mandelbrot.usePeriodicityCheck ? mandelbrot.periodicityTolerance : -1.0D;
+        final double cIm2 = cIm * cIm;
+        // bounds of Mandelbrot.isInCardioidOrBulb() that no point meets if the check is off
+        final double cardioidBound = mandelbrot.useInteriorCheck ? 0.25D * cIm2 : Double.NEGATIVE_INFINITY;
+        final double bulbBound = mandelbrot.useInteriorCheck ? 0.0625D : Double.NEGATIVE_INFINITY;
+        final DoubleVector vS = DoubleVector.broadcast(SPECIES, s);
+        final DoubleVector vMinRe = DoubleVector.broadcast(SPECIES, minRe);
+        final DoubleVector vCIm = DoubleVector.broadcast(SPECIES, cIm);
+        final DoubleVector vCIm2 = DoubleVector.broadcast(SPECIES, cIm2);
+        final DoubleVector vCardioidBound = DoubleVector.broadcast(SPECIES, cardioidBound);
+        final DoubleVector vBulbBound = DoubleVector.broadcast(SPECIES, bulbBound);
+
+        for (int x = xBegin; x < xEnd; x += lanes) {
+            // cRe = minRe + s * x
+            DoubleVector vX = DoubleVector.broadcast(SPECIES, (double) x);
+            DoubleVector vCRe = IOTA.add(vX).mul(vS).add(vMinRe);
+            DoubleVector re = vCRe.sub(QUARTER);
+            DoubleVector q = re.mul(re).add(vCIm2);
+            DoubleVector cardioid = q.mul(q.add(re));
+            DoubleVector bulbRe = vCRe.add(ONE);
+            DoubleVector bulb = bulbRe.mul(bulbRe).add(vCIm2);
+            // lanes past xEnd and lanes in the cardioid or the bulb are done from the start
+            DoubleVector count = ZERO
+                    .add(INSIDE_VECTOR, IOTA.compare(VectorOperators.GE, DoubleVector.broadcast(SPECIES, (double) (xEnd - x))))
+                    .add(INSIDE_VECTOR, cardioid.compare(VectorOperators.LE, vCardioidBound))
+                    .add(INSIDE_VECTOR, bulb.compare(VectorOperators.LE, vBulbBound));
+
+            DoubleVector zRe = DoubleVector.zero(SPECIES);
+            DoubleVector zIm = DoubleVector.zero(SPECIES);
+            DoubleVector savedRe = DoubleVector.zero(SPECIES);
+            DoubleVector savedIm = DoubleVector.zero(SPECIES);
+            int checkpoint = 8;
+            for (int n = 0; n < nMax; ++n) {
+                DoubleVector sqrZRe = zRe.mul(zRe).sub(zIm.mul(zIm));
+                DoubleVector sqrZIm = zRe.mul(zIm).add(zIm.mul(zRe));
+                zRe = sqrZRe.add(vCRe);
+                zIm = sqrZIm.add(vCIm);
+                DoubleVector magnitude = zRe.mul(zRe).add(zIm.mul(zIm));
+
+                // periodicity check: the larger distance to the saved element is within the tolerance,
+                // a lane that diverged has a distance above any tolerance
+                DoubleVector distanceRe = zRe.sub(savedRe).abs();
+                DoubleVector distanceIm = zIm.sub(savedIm).abs();
+                DoubleVector distance = distanceRe.max(distanceIm).max(magnitude.sub(escape).mul(1E300));
+                count = count.add(INSIDE_VECTOR, distance.compare(VectorOperators.LE, tolerance));
+                VectorMask<Double> save = SPECIES.maskAll(n == checkpoint);
+                savedRe = savedRe.blend(zRe, save);
+                savedIm = savedIm.blend(zIm, save);
+                checkpoint = n == checkpoint ? checkpoint << 1 : checkpoint;
+
+                // |z| grows once it exceeds the escape radius, so only lanes that did not diverge are counted
+                count = count.add(ONE, magnitude.compare(VectorOperators.LE, escape));
+                // done if no lane is both bounded and still counted
+                if (!magnitude.blend(INFINITY, count.compare(VectorOperators.GE, INSIDE))
+                        .compare(VectorOperators.LE, escape).anyTrue())
+                    break;
+            }
+
+            int end = Math.min(lanes, xEnd - x);
+            for (int i = 0; i < end; i++)
+                out[offset + x + i] = (int) Math.min(count.lane(i), nMax);
+        }
+    }
+}